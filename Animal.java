@@ -1,5 +1,5 @@
 import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 import java.util.ArrayList;
 import java.util.LinkedList;
 
@@ -9,61 +9,290 @@ import java.util.LinkedList;
  * @author Andrey and Shehan
  * @version (1, 19.02.2019)
  */
-public abstract class Animal
+public abstract class Animal implements CellVisitor
 {
     // Whether the animal is alive or not.
     private boolean alive;
     // The animal's field.
     private Field field;
-    // The animal's position in the field.
-    private Location location;
+    // The animal's position in the field; row is -1 when not placed.
+    private int row = -1;
+    private int col;
     // The animal's sex, either male or female.
     protected String sex;
-    ////Area in which female animal looks for male predetor to breed
-    protected int BREED_SEARCH_RADIUS;
+    // The animal's species, which says how it lives.
+    private Species species;
+    // The animal's age.
+    private int age;
+    // The animal's food level, which is increased by eating.
+    private int foodLevel;
     //The likelihood of an animal being infected and containing the disease.
     protected static double DISEASE_PROBABILITY = 0.0001;
     //The likelihood of an animal to catch a disease from anoter animal.
     protected static double CATCH_DISEASE_PROBABILITY = 0.05;
-    // A shared random number generator to control breeding.
-    protected static final Random rand = Randomizer.getRandom();
     // True if animal catches a disease.
     protected boolean diseased;
+    // Where a male is kept within its bucket of the field's mate index.
+    private int mateSlot;
     
     /**
-     * Create a new animal at location in field.
+     * Create a new animal at location in field. An animal can be created
+     * as a new born (age zero and with its species' newborn food level)
+     * or with a random age and its species' starting food level.
      * 
+     * @param species The species code of the animal.
+     * @param randomAge If true, the animal will have a random age.
      * @param field The field currently occupied.
-     * @param location The location within the field.
+     * @param location The location within the field, or null to leave it
+     *                 out of the field for now.
      * @param sex the String sex of an animal, either male or female. 
      */
-    public Animal(Field field, Location location, String sex)
+    public Animal(int species, boolean randomAge, Field field, Location location, String sex)
+    {
+        this.species = field.getSpecies(species);
+        init(randomAge, field, location, sex);
+    }
+    
+    /**
+     * Bring a dead animal back as a new one of the same species, just as
+     * the constructor would make it, so that EntityPool can use it again.
+     * 
+     * @param randomAge If true, the animal will have a random age.
+     * @param field The field to be in, the one the animal was in before.
+     * @param location The location within the field, or null to leave it
+     *                 out of the field for now.
+     * @param sex the String sex of an animal, either male or female. 
+     */
+    void reuse(boolean randomAge, Field field, Location location, String sex)
+    {
+        age = 0;
+        init(randomAge, field, location, sex);
+    }
+    
+    /**
+     * Set up a new animal, drawing its age or food level.
+     * 
+     * @param randomAge If true, the animal will have a random age.
+     * @param field The field currently occupied.
+     * @param location The location within the field, or null.
+     * @param sex the String sex of an animal, either male or female. 
+     */
+    private void init(boolean randomAge, Field field, Location location, String sex)
     {
         diseased = false;
         alive = true;
         this.sex = sex;
         this.field = field;
-        setLocation(location);
+        if(location != null) {
+            setLocation(location);
+        }
+        RandomGenerator rand = Randomizer.current();
+        if(randomAge) {
+            age = rand.nextInt(this.species.getMaxAge());
+            foodLevel = this.species.getStartingFood();
+        }
+        else if(this.species.hasRandomNewbornFood()) {
+            foodLevel = rand.nextInt(this.species.getNewbornFood());
+        }
+        else {
+            foodLevel = this.species.getNewbornFood();
+        }
     }
     
     /**
-     * Make this animal act - that is: make it do
-     * whatever it wants/needs to do.
+     * This is what the animal does most of the time: it looks for
+     * food. In the process, it might breed, die of hunger,
+     * or die of old age.
      * @param newAnimals A list to receive newly born animals.
      */
-    abstract public void act(List<Animal> newAnimals);
+    public void act(List<Animal> newAnimals)
+    {
+        live(newAnimals, true);
+    }
+    
+    /**
+     * This is what the animal does during fog: it only looks for food
+     * if its species hunts in fog, and otherwise just moves.
+     * @param newAnimals A list to receive newly born animals.
+     */
+    public void actAtFog(List<Animal> newAnimals)
+    {
+        live(newAnimals, species.huntsInFog());
+    }
+    
+    /**
+     * During night animal doesn't hunt and doesn't breed.
+     */
+    public void sleep()
+    {
+        setDisease();
+        incrementAge();
+        incrementHunger();
+    }
     
     /**
-     * Another act method but during fog.
-     * Acts at certain restrictions
+     * Age and get hungrier, then breed and move, to food if it looks for it.
      * @param newAnimals A list to receive newly born animals.
+     * @param hunt true if the animal looks for food.
+     */
+    private void live(List<Animal> newAnimals, boolean hunt)
+    {
+        setDisease();
+        incrementAge();
+        incrementHunger();
+        if(isAlive()) {
+            giveBirth(newAnimals);
+            // Move towards a source of food if found.
+            int newCell = hunt ? field.visitAdjacent(row, col, this) : -1;
+            if(newCell < 0) {
+                // No food found - try to move to a free location.
+                newCell = field.freeAdjacentCell(row, col);
+            }
+            // See if it was possible to move.
+            if(newCell >= 0) {
+                moveTo(newCell);
+            }
+            else {
+                // Overcrowding.
+                setDead();
+            }
+        }
+    }
+    
+    /**
+     * Increase the age, twice as fast when diseased.
+     * This could result in the animal's death.
+     */
+    private void incrementAge()
+    {
+        if (diseased) {
+            age = age + 2;
+        }
+        else {
+            age++;
+        }
+        if(age > species.getMaxAge()) {
+            setDead();
+        }
+    }
+    
+    /**
+     * This makes the animal more hungry. This could result in the animal's death.
+     */
+    private void incrementHunger()
+    {
+        foodLevel--;
+        if(foodLevel <= 0) {
+            setDead();
+        }
+    }
+    
+    /**
+     * Try to eat what is in the given cell, if the animal's species eats
+     * it, the animal is hungry enough for it and it is still alive.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return true if the animal ate there.
+     */
+    public boolean visit(int row, int col)
+    {
+        int food = field.getSpeciesAt(row, col);
+        int value = species.getFoodValue(food);
+        if(value == 0 || (species.eatsOnlyWhenHungry(food) && foodLevel >= value)) {
+            return false;
+        }
+        Object prey = field.getObjectAt(row, col);
+        if(prey instanceof Animal && ((Animal) prey).isAlive()) {
+            ((Animal) prey).setDead();
+        }
+        else if(prey instanceof Plant && ((Plant) prey).isAlive()) {
+            ((Plant) prey).setDead();
+        }
+        else {
+            return false;
+        }
+        StepMetrics metrics = field.getMetrics();
+        if(metrics != null) {
+            metrics.killed(food);
+        }
+        foodLevel = value;
+        return true;
+    }
+    
+    /**
+     * Check whether or not this animal is to give birth at this step.
+     * New births will be made into free adjacent locations.
+     * @param newAnimals A list to return newly born animals.
+     */
+    private void giveBirth(List<Animal> newAnimals)
+    {
+        // Each newborn takes a random free adjacent location.
+        int births = breed();
+        for(int b = 0; b < births; b++) {
+            int cell = field.freeAdjacentCell(row, col);
+            if(cell < 0) {
+                break;
+            }
+            Location loc = new Location(field.rowOf(cell), field.colOf(cell));
+            newAnimals.add(field.makeAnimal(species.getCode(), false, loc, giveSex()));
+        }
+    }
+    
+    /**
+     * Generate a number representing the number of births,
+     * if it can breed.
+     * @return The number of births (may be zero).
+     */
+    private int breed()
+    {
+        RandomGenerator rand = Randomizer.current();
+        int births = 0;
+        if(age >= species.getBreedingAge() && rand.nextDouble() <= species.getBreedingProbability()
+           && partnerClose()) {
+            births = rand.nextInt(species.getMaxLitterSize()) + 1;
+        }
+        return births;
+    }
+    
+    /**
+     * Return the species code of the animal.
+     * @return One of the codes in Species.
+     */
+    public int getSpecies()
+    {
+        return species.getCode();
+    }
+    
+    /**
+     * @return The animal's age.
      */
-    abstract public void actAtFog(List<Animal> newAnimals);
+    public int getAge()
+    {
+        return age;
+    }
     
     /**
-     * Animals act at night.
+     * @return The animal's food level.
      */
-    abstract public void sleep();
+    public int getFoodLevel()
+    {
+        return foodLevel;
+    }
+    
+    /**
+     * Give the animal the state it had when a checkpoint was written.
+     * @param age The animal's age.
+     * @param foodLevel The animal's food level.
+     * @param diseased Whether it has a disease.
+     * @param alive Whether it is alive; a dead animal must not be in the field.
+     */
+    void restore(int age, int foodLevel, boolean diseased, boolean alive)
+    {
+        this.age = age;
+        this.foodLevel = foodLevel;
+        this.diseased = diseased;
+        this.alive = alive;
+    }
     
     /**
      * Return the sex of an animal.
@@ -71,6 +300,14 @@ public abstract class Animal
     public String getSex(){
         return sex;
     }
+    
+    /**
+     * @return true if the animal is male.
+     */
+    public boolean isMale()
+    {
+        return "male".equals(sex);
+    }
 
     /**
      * Check whether the animal is alive or not.
@@ -88,20 +325,42 @@ public abstract class Animal
     protected void setDead()
     {
         alive = false;
-        if(location != null) {
-            field.clear(location);
-            location = null;
+        if(row >= 0) {
+            if(isMale()) {
+                field.getMateIndex().remove(this, row, col);
+            }
+            field.clear(row, col);
+            row = -1;
             field = null;
         }
     }
 
     /**
      * Return the animal's location.
-     * @return The animal's location.
+     * @return The animal's location, or null if it is not in the field.
      */
     protected Location getLocation()
     {
-        return location;
+        if(row < 0) {
+            return null;
+        }
+        return new Location(row, col);
+    }
+    
+    /**
+     * @return The row the animal is in.
+     */
+    protected int getRow()
+    {
+        return row;
+    }
+    
+    /**
+     * @return The column the animal is in.
+     */
+    protected int getCol()
+    {
+        return col;
     }
     
     /**
@@ -110,11 +369,60 @@ public abstract class Animal
      */
     protected void setLocation(Location newLocation)
     {
-        if(location != null) {
-            field.clear(location);
+        setLocation(newLocation.getRow(), newLocation.getCol());
+    }
+    
+    /**
+     * Place the animal at the new location in the given field.
+     * @param newRow The row of the animal's new location.
+     * @param newCol The column of the animal's new location.
+     */
+    protected void setLocation(int newRow, int newCol)
+    {
+        if(isMale()) {
+            MateIndex mates = field.getMateIndex();
+            if(row >= 0) {
+                mates.move(this, row, col, newRow, newCol);
+            }
+            else {
+                mates.add(this, newRow, newCol);
+            }
+        }
+        if(row >= 0) {
+            field.move(row, col, newRow, newCol);
         }
-        location = newLocation;
-        field.place(this, newLocation);
+        else {
+            field.place(this, newRow, newCol);
+        }
+        row = newRow;
+        col = newCol;
+    }
+    
+    /**
+     * Move to a packed cell of the animal's field, as returned by
+     * the field's adjacency methods.
+     * @param cell The packed cell to move to.
+     */
+    protected void moveTo(int cell)
+    {
+        setLocation(field.rowOf(cell), field.colOf(cell));
+    }
+    
+    /**
+     * @return Where the animal is kept within its bucket of the mate index.
+     */
+    int getMateSlot()
+    {
+        return mateSlot;
+    }
+    
+    /**
+     * Record where the animal is kept within its bucket of the mate index.
+     * @param slot The animal's position in the bucket.
+     */
+    void setMateSlot(int slot)
+    {
+        mateSlot = slot;
     }
     
     /**
@@ -144,6 +452,37 @@ public abstract class Animal
         diseased = true;
     }
     
+    /**
+     * Method returns true if there is a male animal of the same
+     * species within its species' search radius of a female animal.
+     * The field's mate index is used so only nearby males are looked at.
+     * 
+     * Check if one of the partners is diseased.
+     * If yes then another partner catches a disease
+     * at a probability.
+     * 
+     * @return true if a male is in the locations close to the female
+     */
+    public boolean partnerClose()
+    {
+        if(isMale()) {
+            return false;
+        }
+        Animal beast = field.getMateIndex().findMale(getSpecies(), row, col, species.getSearchRadius());
+        if(beast == null) {
+            return false;
+        }
+        RandomGenerator rand = Randomizer.current();
+        //Check if partner is diseased.
+        if(beast.hasDisease() && rand.nextDouble() <= CATCH_DISEASE_PROBABILITY){
+            diseased = true;
+        }
+        if(diseased && rand.nextDouble() <= CATCH_DISEASE_PROBABILITY){
+            beast.catchDisease();
+        }
+        return true;
+    }
+    
     /**
      * Gives random sex for the animal.
      * Only implement heterosexual here.
@@ -151,14 +490,12 @@ public abstract class Animal
      */
     public static String giveSex() 
     {
-        String sex = new String();
-        if (rand.nextDouble()<0.5){
-             sex = "male";
+        if (Randomizer.current().nextDouble()<0.5){
+             return "male";
         }
         else{
-             sex = "female";
+             return "female";
         }
-        return sex;
     }
 
     /**
@@ -168,7 +505,7 @@ public abstract class Animal
     public void setDisease()
     {
         // If animal is not infected and random probability gives true - infect it.
-        if (hasDisease() == false && rand.nextDouble() <= DISEASE_PROBABILITY) {
+        if (hasDisease() == false && Randomizer.current().nextDouble() <= DISEASE_PROBABILITY) {
             //The line below checks to see if animals get infected
             //System.out.println("He's got HIV");
             
@@ -0,0 +1,1003 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Keeps all the animals of a simulation as parallel arrays of primitives
+ * instead of one object per animal: a species code, flag bits for being
+ * alive, male and diseased, the age, the food level and the packed cell,
+ * all indexed by the animal's id. That is about 16 bytes an animal, and a
+ * step is a loop over the arrays.
+ *
+ * The animals behave as Animal objects do, with the characteristics of
+ * every species copied from Species when the store is made. They share
+ * the field with plant objects: the field holds the species and id of
+ * every stored animal without any object for it.
+ *
+ * Ids are the positions in the arrays. At the end of every step the
+ * animals still alive are moved down to close the gaps left by the dead,
+ * so ids change between steps and newborns follow the animals that were
+ * there before them, just as in the simulator's list of animals.
+ *
+ * The store draws the same random numbers, in the same order, as the
+ * Animal objects do, so a run with a store is the run without one,
+ * unless nights are worked out at once. That includes the numbers
+ * drawn for dead animals: an Animal eaten before its turn still rolls
+ * for a disease at its turn, and one eaten after its turn stays in the
+ * list and rolls at its turn in the next step.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class AnimalStore implements CellVisitor
+{
+    // Bits of an animal's flags.
+    private static final int ALIVE = 1;
+    private static final int MALE = 2;
+    private static final int DISEASED = 4;
+    // Set for an animal that is still alive after its turn in a step.
+    private static final int ACTED = 8;
+    // Room for animals when the store is made.
+    private static final int INITIAL_CAPACITY = 1024;
+    // The side of a bucket of the index of males is 1 << BUCKET_SHIFT cells.
+    private static final int BUCKET_SHIFT = 3;
+    // Room for males in a bucket when it is first used.
+    private static final int BUCKET_CAPACITY = 4;
+    // The most night steps worked out at once; a held night goes on
+    // in batches of this many.
+    static final int MAX_BATCH = 32;
+    // The field the animals live in.
+    private Field field;
+    // The number of ids in use.
+    private int size;
+    // The columns of the field.
+    private int width;
+    // The state of every animal, indexed by id.
+    private byte[] species;
+    private byte[] flags;
+    private short[] age;
+    private short[] food;
+    private int[] cell;
+    // Where a male is kept within its bucket of the index of males.
+    private int[] mateSlot;
+    // For every id, and the one after the last, how many healthy animals
+    // eaten after their turn in the last step came just before it. An
+    // Animal object stays in the list until its next turn, when it still
+    // rolls for a disease, so the store draws for these as well.
+    private int[] lateDead;
+    // The number of bucket columns of the index of males.
+    private int bucketCols;
+    // The ids of the males in every bucket, indexed by species and then bucket.
+    private int[][][] males;
+    // How many males each bucket holds, indexed like males.
+    private int[][] maleCounts;
+    // The animal looking for food while the cells around it are visited.
+    private int eater;
+    // Whether a run of night steps is worked out at its start (see setBatchNights).
+    private boolean batchNights;
+    // The number of steps of the night worked out, or zero if none is,
+    // and how many of them have been run.
+    private int batchSteps;
+    private int batchStep;
+    // The animals that catch a disease and those that die in each step
+    // of the night worked out, in the order of their ids, and how many.
+    private int[][] onsets;
+    private int[] onsetCounts;
+    private int[][] deaths;
+    private int[] deathCounts;
+
+    // The characteristics of every species, copied from Species and
+    // indexed by species code.
+    private int[] breedingAge;
+    private int[] maxAge;
+    private double[] breedingProbability;
+    private int[] maxLitterSize;
+    private int[] searchRadius;
+    // Whether the species looks for food in fog; the others only move.
+    private boolean[] huntsInFog;
+    // The food level of an animal made with a random age.
+    private int[] startingFood;
+    // The food level of a newborn, or the bound of its random food level.
+    private int[] newbornFood;
+    private boolean[] randomNewbornFood;
+    // The food level an eater has after eating a food species, indexed
+    // by eater and then food, or zero if it does not eat it.
+    private int[][] foodValue;
+    // Whether the eater only eats the food when its food level is below the value.
+    private boolean[][] onlyWhenHungry;
+
+    /**
+     * Create an empty store for the animals of a field.
+     * @param field The field the animals live in.
+     */
+    public AnimalStore(Field field)
+    {
+        this.field = field;
+        width = field.getWidth();
+        species = new byte[INITIAL_CAPACITY];
+        flags = new byte[INITIAL_CAPACITY];
+        age = new short[INITIAL_CAPACITY];
+        food = new short[INITIAL_CAPACITY];
+        cell = new int[INITIAL_CAPACITY];
+        mateSlot = new int[INITIAL_CAPACITY];
+        lateDead = new int[INITIAL_CAPACITY + 1];
+        int bucketRows = ((field.getDepth() - 1) >> BUCKET_SHIFT) + 1;
+        bucketCols = ((width - 1) >> BUCKET_SHIFT) + 1;
+        males = new int[Species.count()][bucketRows * bucketCols][];
+        maleCounts = new int[Species.count()][bucketRows * bucketCols];
+        onsets = new int[MAX_BATCH][BUCKET_CAPACITY];
+        onsetCounts = new int[MAX_BATCH];
+        deaths = new int[MAX_BATCH][BUCKET_CAPACITY];
+        deathCounts = new int[MAX_BATCH];
+        copySpecies();
+    }
+
+    /**
+     * Copy the characteristics of every species of the field into flat
+     * tables. Called again when the simulation changes its species.
+     */
+    void copySpecies()
+    {
+        int count = Species.count();
+        breedingAge = new int[count];
+        maxAge = new int[count];
+        breedingProbability = new double[count];
+        maxLitterSize = new int[count];
+        searchRadius = new int[count];
+        huntsInFog = new boolean[count];
+        startingFood = new int[count];
+        newbornFood = new int[count];
+        randomNewbornFood = new boolean[count];
+        foodValue = new int[count][count];
+        onlyWhenHungry = new boolean[count][count];
+        for(int code = Species.NONE + 1; code < count; code++) {
+            Species entry = field.getSpecies(code);
+            breedingAge[code] = entry.getBreedingAge();
+            maxAge[code] = entry.getMaxAge();
+            breedingProbability[code] = entry.getBreedingProbability();
+            maxLitterSize[code] = entry.getMaxLitterSize();
+            searchRadius[code] = entry.getSearchRadius();
+            huntsInFog[code] = entry.huntsInFog();
+            startingFood[code] = entry.getStartingFood();
+            newbornFood[code] = entry.getNewbornFood();
+            randomNewbornFood[code] = entry.hasRandomNewbornFood();
+            for(int food = 0; food < count; food++) {
+                foodValue[code][food] = entry.getFoodValue(food);
+                onlyWhenHungry[code][food] = entry.eatsOnlyWhenHungry(food);
+            }
+        }
+    }
+
+    /**
+     * Remove all animals from the store. The field is not cleared.
+     */
+    public void clear()
+    {
+        size = 0;
+        lateDead[0] = 0;
+        batchSteps = 0;
+        for(int code = 0; code < males.length; code++) {
+            Arrays.fill(males[code], null);
+            Arrays.fill(maleCounts[code], 0);
+        }
+    }
+
+    /**
+     * Add an animal with a random sex and age, as the animal classes
+     * make them when a field is populated.
+     * @param code The species of the animal.
+     * @param row The row of a free cell to put it in.
+     * @param col The column of the cell.
+     * @return The id of the animal.
+     */
+    public int addWithRandomAge(int code, int row, int col)
+    {
+        RandomGenerator rand = Randomizer.current();
+        boolean male = rand.nextDouble() < 0.5;
+        return add(code, male, row, col, rand.nextInt(maxAge[code]), startingFood[code]);
+    }
+
+    /**
+     * Add an animal.
+     * @param code The species of the animal.
+     * @param male true for a male.
+     * @param row The row of a free cell to put it in.
+     * @param col The column of the cell.
+     * @param animalAge The age of the animal.
+     * @param foodLevel The food level of the animal.
+     * @return The id of the animal.
+     */
+    public int add(int code, boolean male, int row, int col, int animalAge, int foodLevel)
+    {
+        int id = append(code, male ? ALIVE | MALE : ALIVE, row, col, animalAge, foodLevel);
+        if(male) {
+            addMale(id);
+        }
+        return id;
+    }
+
+    /**
+     * Add an animal as it was when a checkpoint was written. A male is
+     * not put in the index of males until indexMale is called for it,
+     * so that the males of a bucket can be put back in their old order.
+     * @param code The species of the animal.
+     * @param male true for a male.
+     * @param diseased true if it has a disease.
+     * @param row The row of a free cell to put it in.
+     * @param col The column of the cell.
+     * @param animalAge The age of the animal.
+     * @param foodLevel The food level of the animal.
+     * @return The id of the animal.
+     */
+    int restore(int code, boolean male, boolean diseased, int row, int col, int animalAge, int foodLevel)
+    {
+        int animalFlags = ALIVE | (male ? MALE : 0) | (diseased ? DISEASED : 0);
+        return append(code, animalFlags, row, col, animalAge, foodLevel);
+    }
+
+    /**
+     * Put a male added by restore in the index of males, after the males
+     * already in its bucket.
+     * @param id The male.
+     */
+    void indexMale(int id)
+    {
+        addMale(id);
+    }
+
+    /**
+     * Put an animal at the end of the arrays and in the field.
+     * @return The id of the animal.
+     */
+    private int append(int code, int animalFlags, int row, int col, int animalAge, int foodLevel)
+    {
+        // A night worked out at once would leave a new animal out.
+        settle();
+        if(size == species.length) {
+            int capacity = size * 2;
+            species = Arrays.copyOf(species, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            age = Arrays.copyOf(age, capacity);
+            food = Arrays.copyOf(food, capacity);
+            cell = Arrays.copyOf(cell, capacity);
+            mateSlot = Arrays.copyOf(mateSlot, capacity);
+            lateDead = Arrays.copyOf(lateDead, capacity + 1);
+        }
+        int id = size++;
+        lateDead[id] = 0;
+        lateDead[id + 1] = 0;
+        species[id] = (byte) code;
+        flags[id] = (byte) animalFlags;
+        age[id] = (short) animalAge;
+        food[id] = (short) foodLevel;
+        cell[id] = row * width + col;
+        field.placeEntity(code, id, row, col);
+        return id;
+    }
+
+    /**
+     * Let every live animal act for one step, in the way the condition
+     * calls for, and then close the gaps left by the animals that died.
+     * @param condition The weather and time of day for this step.
+     */
+    public void step(Condition condition)
+    {
+        if(!condition.day()) {
+            if(batchNights) {
+                sleepBatch(condition.nightStepsLeft());
+            }
+            else {
+                sleep();
+            }
+            return;
+        }
+        settle();
+        int end = size;
+        // Read first, as newborns are put after the last id.
+        int lastLateDead = lateDead[end];
+        boolean fog = condition.fogWeather();
+        RandomGenerator rand = Randomizer.current();
+        for(int id = 0; id < end; id++) {
+            drawFor(lateDead[id], rand);
+            if((flags[id] & ALIVE) != 0) {
+                act(id, !fog || huntsInFog[species[id]]);
+                if((flags[id] & ALIVE) != 0) {
+                    flags[id] |= ACTED;
+                }
+            }
+            else if((flags[id] & DISEASED) == 0) {
+                // Eaten before its turn; an Animal still rolls at its turn.
+                drawFor(1, rand);
+            }
+        }
+        drawFor(lastLateDead, rand);
+        compact(end);
+    }
+
+    /**
+     * Draw the numbers dead Animal objects draw when they roll for a
+     * disease at their turn, so that the store draws as they do.
+     * @param count The number of dead animals.
+     * @param rand The generator to draw from.
+     */
+    private static void drawFor(int count, RandomGenerator rand)
+    {
+        for(int i = 0; i < count; i++) {
+            rand.nextDouble();
+        }
+    }
+
+    /**
+     * Let every animal age and get hungrier, as they do at night, a pass
+     * over whole arrays at a time instead of animal by animal: first who
+     * catches a disease, drawn in the order of the ids as grow draws it,
+     * then the ages and food levels, in loops simple enough for the JIT
+     * to use vector instructions where it can, and last a single pass
+     * that takes out the animals that died and closes the gaps they
+     * leave. This gives exactly what growing them one by one would.
+     */
+    private void sleep()
+    {
+        int end = size;
+        RandomGenerator rand = Randomizer.current();
+        for(int id = 0; id < end; id++) {
+            drawFor(lateDead[id], rand);
+            if((flags[id] & (ALIVE | DISEASED)) == ALIVE
+                    && rand.nextDouble() <= Animal.DISEASE_PROBABILITY) {
+                flags[id] |= DISEASED;
+            }
+        }
+        drawFor(lateDead[end], rand);
+        for(int id = 0; id < end; id++) {
+            // Twice as fast when diseased.
+            age[id] += 1 + ((flags[id] & DISEASED) >> 2);
+        }
+        for(int id = 0; id < end; id++) {
+            food[id]--;
+        }
+        int live = 0;
+        for(int id = 0; id < end; id++) {
+            if((flags[id] & ALIVE) != 0) {
+                if(age[id] > maxAge[species[id]] || food[id] <= 0) {
+                    kill(id);
+                }
+                else {
+                    moveDown(id, live);
+                    lateDead[live] = 0;
+                    live++;
+                }
+            }
+        }
+        size = live;
+        lateDead[live] = 0;
+    }
+
+    /**
+     * Choose whether a whole night is worked out at its first step,
+     * instead of step by step. Then who catches a disease during the
+     * night is drawn at once for all the steps of all the animals, by
+     * skipping over the trials that fail, and the step each animal dies
+     * in follows from its age, food level and disease. The night steps
+     * then only add to the ages and take from the food levels, and kill
+     * the animals due to die, and the gaps are closed once, at the end
+     * of the night. Animals catch diseases and die as often and when
+     * they would step by step, but from other random numbers.
+     * @param enabled true to work out nights at once.
+     */
+    public void setBatchNights(boolean enabled)
+    {
+        batchNights = enabled;
+        settle();
+    }
+
+    /**
+     * Run a night step of the night worked out at once, working the
+     * night out first if this is its first step.
+     * @param stepsLeft The night steps left, this one included.
+     */
+    private void sleepBatch(int stepsLeft)
+    {
+        if(batchSteps == 0) {
+            planNight(Math.min(stepsLeft, MAX_BATCH));
+        }
+        int step = batchStep;
+        for(int i = 0; i < onsetCounts[step]; i++) {
+            flags[onsets[step][i]] |= DISEASED;
+        }
+        int end = size;
+        for(int id = 0; id < end; id++) {
+            // Twice as fast when diseased.
+            age[id] += 1 + ((flags[id] & DISEASED) >> 2);
+        }
+        for(int id = 0; id < end; id++) {
+            food[id]--;
+        }
+        for(int i = 0; i < deathCounts[step]; i++) {
+            kill(deaths[step][i]);
+        }
+        batchStep++;
+        if(batchStep == batchSteps) {
+            settle();
+        }
+    }
+
+    /**
+     * Work out a night: which animals catch a disease in which step of
+     * it, and which die in which step.
+     * @param steps The number of night steps.
+     */
+    private void planNight(int steps)
+    {
+        batchSteps = steps;
+        batchStep = 0;
+        // A night worked out at once draws otherwise anyway.
+        Arrays.fill(lateDead, 0, size + 1, 0);
+        Arrays.fill(onsetCounts, 0);
+        Arrays.fill(deathCounts, 0);
+        RandomGenerator rand = Randomizer.current();
+        double logMiss = Math.log1p(-Animal.DISEASE_PROBABILITY);
+        // The trials to pass over before the next disease is caught,
+        // counting the night steps of the healthy animals one after the other.
+        long skip = nextSkip(logMiss, rand);
+        for(int id = 0; id < size; id++) {
+            if((flags[id] & ALIVE) == 0) {
+                continue;
+            }
+            // The step from which the animal ages twice as fast.
+            int diseased = 0;
+            if((flags[id] & DISEASED) == 0) {
+                if(skip < steps) {
+                    diseased = (int) skip;
+                    onsets[diseased] = addTo(onsets[diseased], onsetCounts[diseased]++, id);
+                    skip = nextSkip(logMiss, rand);
+                }
+                else {
+                    diseased = steps;
+                    skip -= steps;
+                }
+            }
+            int dies = Math.min(food[id] - 1, oldAgeStep(age[id], maxAge[species[id]], diseased));
+            if(dies < steps) {
+                dies = Math.max(dies, 0);
+                deaths[dies] = addTo(deaths[dies], deathCounts[dies]++, id);
+            }
+        }
+    }
+
+    /**
+     * @param animalAge The age of an animal.
+     * @param maxAge The age it dies when it is older than.
+     * @param diseased The step from which it ages by two a step, not one.
+     * @return The step in which it gets too old, counting from zero.
+     */
+    private static int oldAgeStep(int animalAge, int maxAge, int diseased)
+    {
+        int step = maxAge - animalAge;
+        if(step < diseased) {
+            return step;
+        }
+        return diseased + (maxAge - animalAge - diseased) / 2;
+    }
+
+    /**
+     * Draw how many trials fail before the next animal catches a disease.
+     * @param logMiss The log of the chance that a trial fails.
+     * @param rand The generator to draw from.
+     * @return A geometrically distributed number of trials.
+     */
+    private static long nextSkip(double logMiss, RandomGenerator rand)
+    {
+        if(logMiss == 0) {
+            return Long.MAX_VALUE;
+        }
+        // 1 - nextDouble() lies in (0, 1], so the log is never infinite.
+        return (long) (Math.log(1 - rand.nextDouble()) / logMiss);
+    }
+
+    /**
+     * Put an id at a place in a list, making the list longer if it is full.
+     * @return The list, which may be a new one.
+     */
+    private static int[] addTo(int[] list, int at, int id)
+    {
+        if(at == list.length) {
+            list = Arrays.copyOf(list, at * 2);
+        }
+        list[at] = id;
+        return list;
+    }
+
+    /**
+     * @return The number of steps of the night worked out at once that
+     *         are still to run, or zero if no night is worked out.
+     */
+    int getPlannedSteps()
+    {
+        return batchSteps - batchStep;
+    }
+
+    /**
+     * @param step A step of the night worked out at once still to run,
+     *             counting from zero for the next one.
+     * @return The animals that catch a disease in it, some of which may
+     *         have died since the night was worked out.
+     */
+    int[] getPlannedOnsets(int step)
+    {
+        return Arrays.copyOf(onsets[batchStep + step], onsetCounts[batchStep + step]);
+    }
+
+    /**
+     * @param step A step of the night worked out at once still to run,
+     *             counting from zero for the next one.
+     * @return The animals that die in it, some of which may have died
+     *         earlier since the night was worked out.
+     */
+    int[] getPlannedDeaths(int step)
+    {
+        return Arrays.copyOf(deaths[batchStep + step], deathCounts[batchStep + step]);
+    }
+
+    /**
+     * Put back the rest of a night worked out at once, as a checkpoint
+     * holds it, once its animals are restored.
+     * @param nightOnsets The animals that catch a disease in each step
+     *                    still to run, in the order of their ids.
+     * @param nightDeaths The animals that die in each step still to run.
+     */
+    void restorePlan(int[][] nightOnsets, int[][] nightDeaths)
+    {
+        batchSteps = nightOnsets.length;
+        batchStep = 0;
+        Arrays.fill(onsetCounts, 0);
+        Arrays.fill(deathCounts, 0);
+        for(int step = 0; step < batchSteps; step++) {
+            for(int id : nightOnsets[step]) {
+                onsets[step] = addTo(onsets[step], onsetCounts[step]++, id);
+            }
+            for(int id : nightDeaths[step]) {
+                deaths[step] = addTo(deaths[step], deathCounts[step]++, id);
+            }
+        }
+    }
+
+    /**
+     * Finish with a night worked out at once before its end, e.g. when
+     * day comes early or a new animal is added: take out the animals
+     * that died so far, and forget what was worked out for the rest of
+     * it. Since the chance of catching a disease does not depend on the
+     * steps before, working out the rest afresh gives the same odds.
+     */
+    void settle()
+    {
+        if(batchSteps != 0) {
+            batchSteps = 0;
+            batchStep = 0;
+            compact(size);
+        }
+    }
+
+    /**
+     * Let an animal age and get hungrier, as it does at the start of
+     * acting by day. It may catch a disease and it may die.
+     * @param id The animal.
+     * @return true if it is still alive.
+     */
+    private boolean grow(int id)
+    {
+        if((flags[id] & DISEASED) == 0
+                && Randomizer.current().nextDouble() <= Animal.DISEASE_PROBABILITY) {
+            flags[id] |= DISEASED;
+        }
+        age[id] += (flags[id] & DISEASED) != 0 ? 2 : 1;
+        if(age[id] > maxAge[species[id]]) {
+            kill(id);
+        }
+        food[id]--;
+        if(food[id] <= 0) {
+            kill(id);
+        }
+        return (flags[id] & ALIVE) != 0;
+    }
+
+    /**
+     * Let an animal act by day: it grows, may give birth, and then moves
+     * to food or to a free cell, or dies of overcrowding.
+     * @param id The animal.
+     * @param hunt true if it looks for food before moving.
+     */
+    private void act(int id, boolean hunt)
+    {
+        if(!grow(id)) {
+            return;
+        }
+        giveBirth(id);
+        int row = field.rowOf(cell[id]);
+        int col = field.colOf(cell[id]);
+        int newCell = -1;
+        if(hunt) {
+            eater = id;
+            newCell = field.visitAdjacent(row, col, this);
+        }
+        if(newCell < 0) {
+            newCell = field.freeAdjacentCell(row, col);
+        }
+        if(newCell >= 0) {
+            moveTo(id, newCell);
+        }
+        else {
+            kill(id);
+        }
+    }
+
+    /**
+     * Try to let the animal looking for food eat what is in the given cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return true if it ate there.
+     */
+    public boolean visit(int row, int col)
+    {
+        int code = species[eater];
+        int target = field.getEntityAt(row, col);
+        if(target >= 0) {
+            int value = foodValue[code][species[target]];
+            if(value > 0 && (!onlyWhenHungry[code][species[target]] || food[eater] < value)) {
+                countKill(species[target]);
+                kill(target);
+                food[eater] = (short) value;
+                return true;
+            }
+            return false;
+        }
+        int value = foodValue[code][field.getSpeciesAt(row, col)];
+        if(value > 0) {
+            Plant plant = (Plant) field.getObjectAt(row, col);
+            if(plant.isAlive()) {
+                countKill(plant.getSpecies());
+                plant.setDead();
+                food[eater] = (short) value;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Count a member of a species being eaten, if the simulation is measured.
+     * @param code The species code.
+     */
+    private void countKill(int code)
+    {
+        StepMetrics metrics = field.getMetrics();
+        if(metrics != null) {
+            metrics.killed(code);
+        }
+    }
+
+    /**
+     * Let an animal give birth if it can breed, wants to and has a
+     * partner close. The young are put in free cells around it.
+     * @param id The animal.
+     */
+    private void giveBirth(int id)
+    {
+        RandomGenerator rand = Randomizer.current();
+        int code = species[id];
+        if(age[id] < breedingAge[code] || rand.nextDouble() > breedingProbability[code]
+                || !partnerClose(id)) {
+            return;
+        }
+        int row = field.rowOf(cell[id]);
+        int col = field.colOf(cell[id]);
+        int births = rand.nextInt(maxLitterSize[code]) + 1;
+        for(int b = 0; b < births; b++) {
+            int free = field.freeAdjacentCell(row, col);
+            if(free < 0) {
+                break;
+            }
+            boolean male = rand.nextDouble() < 0.5;
+            int foodLevel = randomNewbornFood[code] ? rand.nextInt(newbornFood[code]) : newbornFood[code];
+            add(code, male, field.rowOf(free), field.colOf(free), 0, foodLevel);
+        }
+    }
+
+    /**
+     * Find out whether a female has a male of her species close enough
+     * to breed with. If one of them is diseased, the other may catch it.
+     * @param id The animal.
+     * @return true if it is a female with a male close.
+     */
+    private boolean partnerClose(int id)
+    {
+        if((flags[id] & MALE) != 0) {
+            return false;
+        }
+        int code = species[id];
+        int male = findMale(code, field.rowOf(cell[id]), field.colOf(cell[id]), searchRadius[code]);
+        if(male < 0) {
+            return false;
+        }
+        RandomGenerator rand = Randomizer.current();
+        if((flags[male] & DISEASED) != 0 && rand.nextDouble() <= Animal.CATCH_DISEASE_PROBABILITY) {
+            flags[id] |= DISEASED;
+        }
+        if((flags[id] & DISEASED) != 0 && rand.nextDouble() <= Animal.CATCH_DISEASE_PROBABILITY) {
+            flags[male] |= DISEASED;
+        }
+        return true;
+    }
+
+    /**
+     * Let an animal die and take it out of the field.
+     * @param id The animal.
+     */
+    private void kill(int id)
+    {
+        if((flags[id] & ALIVE) == 0) {
+            return;
+        }
+        flags[id] &= ~ALIVE;
+        if((flags[id] & MALE) != 0) {
+            removeMale(id);
+        }
+        field.clear(field.rowOf(cell[id]), field.colOf(cell[id]));
+    }
+
+    /**
+     * Move an animal to a free cell.
+     * @param id The animal.
+     * @param to The packed cell to move to.
+     */
+    private void moveTo(int id, int to)
+    {
+        int from = cell[id];
+        if((flags[id] & MALE) != 0 && bucketOf(from) != bucketOf(to)) {
+            removeMale(id);
+            cell[id] = to;
+            addMale(id);
+        }
+        cell[id] = to;
+        field.move(field.rowOf(from), field.colOf(from), field.rowOf(to), field.colOf(to));
+    }
+
+    /**
+     * Move the live animals down over the dead ones, keeping their order,
+     * and count the healthy animals eaten after their turn in front of
+     * each, which still draw at their turn in the next step.
+     * @param end The first id born in this step; those after it had no
+     *            turn in it.
+     */
+    private void compact(int end)
+    {
+        int live = 0;
+        int late = 0;
+        for(int id = 0; id < size; id++) {
+            if((flags[id] & ALIVE) != 0) {
+                moveDown(id, live);
+                flags[live] &= ~ACTED;
+                lateDead[live] = late;
+                late = 0;
+                live++;
+            }
+            else if((flags[id] & DISEASED) == 0 && ((flags[id] & ACTED) != 0 || id >= end)) {
+                late++;
+            }
+        }
+        size = live;
+        lateDead[live] = late;
+    }
+
+    /**
+     * Give a live animal a lower id, over one that died.
+     * @param id The animal.
+     * @param to Its new id, which is no higher than its id.
+     */
+    private void moveDown(int id, int to)
+    {
+        if(id != to) {
+            species[to] = species[id];
+            flags[to] = flags[id];
+            age[to] = age[id];
+            food[to] = food[id];
+            cell[to] = cell[id];
+            mateSlot[to] = mateSlot[id];
+            field.renumberEntity(to, field.rowOf(cell[to]), field.colOf(cell[to]));
+            if((flags[to] & MALE) != 0) {
+                males[species[to]][bucketOf(cell[to])][mateSlot[to]] = to;
+            }
+        }
+    }
+
+    /**
+     * Add a male to the bucket of its cell.
+     * @param id The animal.
+     */
+    private void addMale(int id)
+    {
+        int code = species[id];
+        int bucket = bucketOf(cell[id]);
+        int[] inBucket = males[code][bucket];
+        int count = maleCounts[code][bucket];
+        if(inBucket == null) {
+            inBucket = new int[BUCKET_CAPACITY];
+            males[code][bucket] = inBucket;
+        }
+        else if(count == inBucket.length) {
+            inBucket = Arrays.copyOf(inBucket, count * 2);
+            males[code][bucket] = inBucket;
+        }
+        inBucket[count] = id;
+        mateSlot[id] = count;
+        maleCounts[code][bucket] = count + 1;
+    }
+
+    /**
+     * Remove a male from the bucket of its cell.
+     * The last male of the bucket takes its slot.
+     * @param id The animal.
+     */
+    private void removeMale(int id)
+    {
+        int code = species[id];
+        int bucket = bucketOf(cell[id]);
+        int[] inBucket = males[code][bucket];
+        int last = maleCounts[code][bucket] - 1;
+        int moved = inBucket[last];
+        inBucket[mateSlot[id]] = moved;
+        mateSlot[moved] = mateSlot[id];
+        maleCounts[code][bucket] = last;
+    }
+
+    /**
+     * Find a live male of the given species within a square area.
+     * @param code The species.
+     * @param row The row of the centre of the area.
+     * @param col The column of the centre of the area.
+     * @param radius How many cells the area reaches in each direction.
+     * @return The id of a male within the area, or -1 if there is none.
+     */
+    private int findMale(int code, int row, int col, int radius)
+    {
+        int[][] speciesMales = males[code];
+        int[] counts = maleCounts[code];
+        int bucketRows = counts.length / bucketCols;
+        int firstRow = Math.max(row - radius, 0) >> BUCKET_SHIFT;
+        int lastRow = Math.min((row + radius) >> BUCKET_SHIFT, bucketRows - 1);
+        int firstCol = Math.max(col - radius, 0) >> BUCKET_SHIFT;
+        int lastCol = Math.min((col + radius) >> BUCKET_SHIFT, bucketCols - 1);
+        for(int bucketRow = firstRow; bucketRow <= lastRow; bucketRow++) {
+            for(int bucketCol = firstCol; bucketCol <= lastCol; bucketCol++) {
+                int bucket = bucketRow * bucketCols + bucketCol;
+                int[] inBucket = speciesMales[bucket];
+                for(int i = counts[bucket] - 1; i >= 0; i--) {
+                    int male = inBucket[i];
+                    int at = cell[male];
+                    if(Math.abs(at / width - row) <= radius && Math.abs(at % width - col) <= radius) {
+                        return male;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The bucket of the index of males that holds a packed cell.
+     */
+    private int bucketOf(int at)
+    {
+        return ((at / width) >> BUCKET_SHIFT) * bucketCols + ((at % width) >> BUCKET_SHIFT);
+    }
+
+    /**
+     * @return The number of ids in use. Between steps all of them are
+     *         alive, unless a night worked out at once is still running.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param id An animal.
+     * @return Its species code.
+     */
+    public int getSpecies(int id)
+    {
+        return species[id];
+    }
+
+    /**
+     * @param id An animal.
+     * @return true if it is alive.
+     */
+    public boolean isAlive(int id)
+    {
+        return (flags[id] & ALIVE) != 0;
+    }
+
+    /**
+     * @param id An animal.
+     * @return true if it is male.
+     */
+    public boolean isMale(int id)
+    {
+        return (flags[id] & MALE) != 0;
+    }
+
+    /**
+     * @param id An animal.
+     * @return true if it has a disease.
+     */
+    public boolean hasDisease(int id)
+    {
+        return (flags[id] & DISEASED) != 0;
+    }
+
+    /**
+     * @param id An animal.
+     * @return Its age.
+     */
+    public int getAge(int id)
+    {
+        return age[id];
+    }
+
+    /**
+     * @param id An animal.
+     * @return Its food level.
+     */
+    public int getFoodLevel(int id)
+    {
+        return food[id];
+    }
+
+    /**
+     * @param id An animal.
+     * @return The packed cell it is in.
+     */
+    public int getCell(int id)
+    {
+        return cell[id];
+    }
+
+    /**
+     * @param id A male.
+     * @return Where it is kept within its bucket of the index of males.
+     */
+    int getMateSlot(int id)
+    {
+        return mateSlot[id];
+    }
+
+    /**
+     * @param id An animal, or size() for the end of the animals.
+     * @return How many healthy animals eaten after their turn in the last
+     *         step come just before it, which still draw in this one.
+     */
+    int getLateDead(int id)
+    {
+        return lateDead[id];
+    }
+
+    /**
+     * Put back how many animals eaten late come just before an animal,
+     * as a checkpoint holds it.
+     * @param id An animal, or size() for the end of the animals.
+     * @param count The number of animals eaten late.
+     */
+    void setLateDead(int id, int count)
+    {
+        lateDead[id] = count;
+    }
+
+    /**
+     * @param row The row of a cell.
+     * @param col The column of the cell.
+     * @return The id of the animal in the cell, or -1 if there is none.
+     */
+    public int idAt(int row, int col)
+    {
+        return field.getEntityAt(row, col);
+    }
+}
@@ -0,0 +1,235 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Benchmarks for the field queries the animals use and for whole
+ * simulation steps, to tell whether a change helps or hurts.
+ * Every benchmark is warmed up first and then measured over several
+ * iterations. For each one the time per operation is printed, together
+ * with the bytes allocated per operation on the measuring thread, the
+ * allocation rate and the garbage collections during measurement.
+ * Run with a word as the first argument to run only the benchmarks whose
+ * names contain it, e.g. "step", "store" or "Field".
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class BenchmarkSuite
+{
+    // Iterations run before measuring, so that the JIT has warmed up.
+    private static final int WARMUP_ITERATIONS = 3;
+    // Iterations measured for each benchmark.
+    private static final int MEASURED_ITERATIONS = 5;
+    // The seed of every simulation benchmarked, so that runs compare.
+    private static final long SEED = 1111;
+    // The depth and width of the field the queries are measured on.
+    private static final int QUERY_DEPTH = 200;
+    private static final int QUERY_WIDTH = 250;
+    // How many different places the queries are made at, in turn.
+    private static final int PLACES = 1024;
+    // The sizes of field the steps are measured on, as depth and width.
+    private static final int[][] STEP_SIZES = { {100, 125}, {200, 250}, {400, 500} };
+    // The densities the steps are measured at, as multiples of the usual one.
+    private static final double[] STEP_DENSITIES = { 0.5, 1, 2 };
+    // Steps in each iteration. The field is filled again before each iteration.
+    private static final int STEPS_PER_ITERATION = 20;
+
+    // Where results are put so that the JIT cannot skip computing them.
+    private static volatile Object sink;
+    private static volatile int intSink;
+
+    // Only benchmarks whose name contains this are run.
+    private static String filter = "";
+
+    /**
+     * Run the benchmarks and print the results.
+     * @param args Optionally a word the names of the benchmarks to run contain.
+     */
+    public static void main(String[] args)
+    {
+        if(args.length > 0) {
+            filter = args[0];
+        }
+        queryBenchmarks();
+        stepBenchmarks();
+        System.exit(0);
+    }
+
+    /**
+     * Measure the field queries, partner search and populating the field.
+     */
+    public static void queryBenchmarks()
+    {
+        Simulator simulator = new Simulator(QUERY_DEPTH, QUERY_WIDTH, false);
+        simulator.setSeed(SEED);
+        simulator.reset();
+        Field field = simulator.getField();
+
+        RandomGenerator rand = new Randomizer(SEED).stream(0, 0);
+        Location[] places = new Location[PLACES];
+        for(int i = 0; i < PLACES; i++) {
+            places[i] = new Location(rand.nextInt(QUERY_DEPTH), rand.nextInt(QUERY_WIDTH));
+        }
+        List<Animal> females = new ArrayList<>();
+        for(int row = 0; row < field.getDepth() && females.size() < PLACES; row++) {
+            for(int col = 0; col < field.getWidth() && females.size() < PLACES; col++) {
+                Object occupant = field.getObjectAt(row, col);
+                if(occupant instanceof Predator && !((Animal) occupant).isMale()) {
+                    females.add((Animal) occupant);
+                }
+            }
+        }
+        int[] cells = new int[8];
+        CellVisitor none = (row, col) -> false;
+
+        measure("Field.adjacentLocations", null, 100_000,
+                i -> sink = field.adjacentLocations(places[i % PLACES]));
+        measure("Field.getFreeAdjacentLocations", null, 100_000,
+                i -> sink = field.getFreeAdjacentLocations(places[i % PLACES]));
+        measure("Field.getFilledLocationsInArea(r=3)", null, 10_000,
+                i -> sink = field.getFilledLocationsInArea(places[i % PLACES], 3));
+        measure("Field.getFilledLocationsInArea(r=7)", null, 2_000,
+                i -> sink = field.getFilledLocationsInArea(places[i % PLACES], 7));
+        measure("Field.getEmptyLocations", null, 20,
+                i -> sink = field.getEmptyLocations());
+        measure("Field.adjacentCells", null, 100_000,
+                i -> intSink = field.adjacentCells(places[i % PLACES].getRow(),
+                                                   places[i % PLACES].getCol(), cells));
+        measure("Field.freeAdjacentCell", null, 100_000,
+                i -> intSink = field.freeAdjacentCell(places[i % PLACES].getRow(),
+                                                      places[i % PLACES].getCol()));
+        measure("Field.visitAdjacent", null, 100_000,
+                i -> intSink = field.visitAdjacent(places[i % PLACES].getRow(),
+                                                   places[i % PLACES].getCol(), none));
+        if(!females.isEmpty()) {
+            measure("Predator.partnerClose", null, 100_000,
+                    i -> sink = females.get(i % females.size()).partnerClose());
+        }
+        measure("Simulator.populate", null, 5,
+                i -> simulator.reset());
+    }
+
+    /**
+     * Measure whole steps by day, in fog and by night, on every size of
+     * field and at every density, with the animals kept as objects and
+     * in an AnimalStore.
+     */
+    public static void stepBenchmarks()
+    {
+        String[] conditions = { "day", "fog", "night" };
+        for(boolean stored : new boolean[] { false, true }) {
+            for(int[] size : STEP_SIZES) {
+                for(double density : STEP_DENSITIES) {
+                    for(String name : conditions) {
+                        Simulator simulator = new Simulator(size[0], size[1], false);
+                        simulator.setSeed(SEED);
+                        simulator.setDensity(density);
+                        simulator.setAnimalStore(stored);
+                        boolean day = !name.equals("night");
+                        String weather = name.equals("fog") ? "fog" : "warm";
+                        measure(String.format("step %s %dx%d density %.1f%s", name, size[0], size[1],
+                                              density, stored ? " store" : ""),
+                                () -> {
+                                    simulator.reset();
+                                    simulator.getCondition().hold(weather, day);
+                                },
+                                STEPS_PER_ITERATION,
+                                i -> simulator.simulateOneStep());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Warm up and measure one benchmark, and print the results.
+     * @param name The name of the benchmark.
+     * @param setup Run before every iteration without being measured, or null.
+     * @param operations The number of operations in an iteration.
+     * @param operation The operation measured.
+     */
+    private static void measure(String name, Runnable setup, int operations, Operation operation)
+    {
+        if(!name.contains(filter)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        double[] nanosPerOp = new double[MEASURED_ITERATIONS];
+        long totalNanos = 0;
+        long totalBytes = 0;
+        long gcCount = 0;
+        long gcMillis = 0;
+        for(int iteration = -WARMUP_ITERATIONS; iteration < MEASURED_ITERATIONS; iteration++) {
+            if(setup != null) {
+                setup.run();
+            }
+            long count = gcCount();
+            long millis = gcMillis();
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for(int i = 0; i < operations; i++) {
+                operation.run(i);
+            }
+            long elapsed = System.nanoTime() - start;
+            bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+            if(iteration >= 0) {
+                nanosPerOp[iteration] = (double) elapsed / operations;
+                totalNanos += elapsed;
+                totalBytes += bytes;
+                gcCount += gcCount() - count;
+                gcMillis += gcMillis() - millis;
+            }
+        }
+
+        double mean = (double) totalNanos / operations / MEASURED_ITERATIONS;
+        double variance = 0;
+        for(double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = Math.sqrt(variance / MEASURED_ITERATIONS) / mean * 100;
+        double bytesPerOp = (double) totalBytes / operations / MEASURED_ITERATIONS;
+        double megabytesPerSecond = totalBytes / 1e6 / (totalNanos / 1e9);
+        System.out.printf("%-40s %14.1f ns/op  +-%4.1f%%  %12.1f B/op  %8.1f MB/s  gc %d (%d ms)%n",
+                          name, mean, error, bytesPerOp, megabytesPerSecond, gcCount, gcMillis);
+    }
+
+    /**
+     * @return The number of garbage collections so far.
+     */
+    private static long gcCount()
+    {
+        long count = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /**
+     * @return The time spent collecting garbage so far, in milliseconds.
+     */
+    private static long gcMillis()
+    {
+        long millis = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(gc.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    /**
+     * An operation to measure.
+     */
+    private interface Operation
+    {
+        /**
+         * Do the operation once.
+         * @param i The number of the operation in its iteration.
+         */
+        void run(int i);
+    }
+}
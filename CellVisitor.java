@@ -0,0 +1,17 @@
+/**
+ * A callback for looking at the cells around a location one by one,
+ * without building Location objects or lists of them.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public interface CellVisitor
+{
+    /**
+     * Look at one cell of the field.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return true to stop at this cell, false to go on to the next one.
+     */
+    boolean visit(int row, int col);
+}
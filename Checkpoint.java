@@ -0,0 +1,836 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+/**
+ * Writes the whole state of a simulation to a compact binary file and
+ * reads it back, so that a run can be paused, moved to another machine
+ * or resumed after a crash, and carry on exactly as it would have.
+ *
+ * A checkpoint holds, in this order: a header with the size of the
+ * field, the names of the species and everything the simulation was
+ * configured with (see Simulator.configure); the step, the seed, how
+ * random numbers are drawn, whether nights are worked out at once, the
+ * density and, if the plants are scheduled, the clock of the
+ * PlantScheduler; the state of the shared random generator, if the
+ * simulation draws from it; the weather and clock of the Condition;
+ * every animal in the order the simulation keeps them, as its species,
+ * flags, age, food level, cell and place in the index of males, and for
+ * an AnimalStore how many animals eaten late came just before it, with
+ * what is still to come of a night the store worked out at once;
+ * and every living plant as its species and cell, and the growing step
+ * it is due at if the plants are scheduled, so that they are not
+ * scheduled afresh. The grid itself is not written, as it follows from
+ * where the animals and plants are. Seeded streams need no state of
+ * their own, as they only depend on the seed and the step. Writing a
+ * checkpoint changes nothing in the simulation: dead animals and plants
+ * not yet dropped are left out, not dropped.
+ *
+ * Files are written and read through a FileChannel with a large direct
+ * buffer. A checkpoint is first written next to the file and then moved
+ * over it, so a crash while writing leaves the old checkpoint intact.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class Checkpoint
+{
+    // The first four bytes of every checkpoint, "PPSC".
+    private static final int MAGIC = 0x50505343;
+    // The version of the format, raised whenever the layout changes.
+    private static final int VERSION = 4;
+    // The size of the buffer between the file and the simulation.
+    private static final int BUFFER_SIZE = 1 << 20;
+    // The longest string or block of bytes in a checkpoint.
+    private static final int MAX_BLOCK = 1 << 20;
+    // Bits of an animal's flags.
+    private static final int ALIVE = 1;
+    private static final int MALE = 2;
+    private static final int DISEASED = 4;
+
+    /**
+     * Write the state of a simulation to a file, replacing it if it exists.
+     * @param simulator The simulation, between steps.
+     * @param path The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void save(Simulator simulator, Path path) throws IOException
+    {
+        Path partial = path.resolveSibling(path.getFileName() + ".part");
+        try(FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE,
+                                                   StandardOpenOption.CREATE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(simulator, channel, true);
+            channel.force(false);
+        }
+        Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Put a simulation back in the state written to a file. The
+     * simulation must have a field of the same size and the same species.
+     * @param simulator The simulation to restore.
+     * @param path The file to read.
+     * @throws IOException If the file cannot be read or does not fit the simulation.
+     */
+    public static void load(Simulator simulator, Path path) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            read(simulator, channel);
+        }
+    }
+
+    /**
+     * Write the state of a simulation.
+     * @param simulator The simulation, between steps.
+     * @param channel Where to write it.
+     * @param withPlants true to write the plants too, false to leave them
+     *                   out so they can be written with writePlants.
+     */
+    static void write(Simulator simulator, WritableByteChannel channel, boolean withPlants)
+        throws IOException
+    {
+        Output out = new Output(channel);
+        Field field = simulator.getField();
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(field.getDepth());
+        out.putInt(field.getWidth());
+        out.putInt(Species.count());
+        for(int code = Species.NONE + 1; code < Species.count(); code++) {
+            out.putString(Species.getName(code));
+        }
+        Properties config = simulator.getConfiguration();
+        out.putInt(config.size());
+        for(String key : new TreeSet<>(config.stringPropertyNames())) {
+            out.putString(key);
+            out.putString(config.getProperty(key));
+        }
+
+        out.putInt(simulator.getStep());
+        out.putLong(simulator.getSeed());
+        out.putBoolean(simulator.usesSharedRandom());
+        out.putBoolean(simulator.getThreads() > 0);
+        out.putBoolean(simulator.usesBatchNights());
+        out.putDouble(simulator.getDensity());
+        PlantScheduler scheduler = simulator.getPlantScheduler();
+        out.putBoolean(scheduler != null);
+        if(scheduler != null) {
+            out.putInt(scheduler.getClock());
+        }
+        // A seeded simulation must not touch the shared generator, which
+        // other simulations in the same JVM may be drawing from.
+        if(simulator.usesSharedRandom()) {
+            out.putBytes(Randomizer.getSharedState());
+        }
+
+        Condition condition = simulator.getCondition();
+        out.putString(condition.getWeather());
+        out.putBoolean(condition.day());
+        out.putInt(condition.getTime());
+        out.putBoolean(condition.isHeld());
+
+        AnimalStore store = simulator.getAnimalStore();
+        out.putBoolean(store != null);
+        if(store != null) {
+            // The animals that died in a night worked out at once are
+            // left out, and the others numbered as they will be at its end.
+            int[] ids = new int[store.size()];
+            int live = 0;
+            for(int id = 0; id < store.size(); id++) {
+                ids[id] = store.isAlive(id) ? live++ : -1;
+            }
+            out.putInt(live);
+            for(int id = 0; id < store.size(); id++) {
+                if(!store.isAlive(id)) {
+                    continue;
+                }
+                boolean male = store.isMale(id);
+                out.putByte(store.getSpecies(id));
+                out.putByte(flags(store.isAlive(id), male, store.hasDisease(id)));
+                out.putInt(store.getAge(id));
+                out.putInt(store.getFoodLevel(id));
+                out.putInt(field.rowOf(store.getCell(id)));
+                out.putInt(field.colOf(store.getCell(id)));
+                out.putInt(male ? store.getMateSlot(id) : -1);
+                out.putInt(store.getLateDead(id));
+            }
+            out.putInt(store.getLateDead(store.size()));
+            out.putInt(store.getPlannedSteps());
+            for(int step = 0; step < store.getPlannedSteps(); step++) {
+                putLiving(out, store.getPlannedOnsets(step), ids);
+                putLiving(out, store.getPlannedDeaths(step), ids);
+            }
+        }
+        else {
+            List<Animal> animals = simulator.getAnimals();
+            out.putInt(animals.size());
+            for(Animal animal : animals) {
+                boolean male = animal.isMale();
+                // Animals eaten late in a step stay in the list until the next one.
+                boolean alive = animal.isAlive();
+                out.putByte(animal.getSpecies());
+                out.putByte(flags(alive, male, animal.hasDisease()));
+                out.putInt(animal.getAge());
+                out.putInt(animal.getFoodLevel());
+                out.putInt(alive ? animal.getRow() : -1);
+                out.putInt(alive ? animal.getCol() : -1);
+                out.putInt(alive && male ? animal.getMateSlot() : -1);
+            }
+        }
+
+        if(withPlants) {
+            List<Plant> plants = simulator.getPlants();
+            int living = 0;
+            for(Plant plant : plants) {
+                living += plant.isAlive() ? 1 : 0;
+            }
+            out.putInt(living);
+            for(Plant plant : plants) {
+                if(!plant.isAlive()) {
+                    continue;
+                }
+                out.putByte(plant.getSpecies());
+                out.putInt(plant.getRow());
+                out.putInt(plant.getCol());
+                if(scheduler != null) {
+                    out.putInt(scheduler.getDue(plant));
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Write the animals of a list that are still alive, by their new ids.
+     * @param out Where to write them.
+     * @param list The ids of animals in a store.
+     * @param ids The new id of every animal, or -1 if it is dead.
+     */
+    private static void putLiving(Output out, int[] list, int[] ids) throws IOException
+    {
+        int count = 0;
+        for(int id : list) {
+            count += ids[id] >= 0 ? 1 : 0;
+        }
+        out.putInt(count);
+        for(int id : list) {
+            if(ids[id] >= 0) {
+                out.putInt(ids[id]);
+            }
+        }
+    }
+
+    /**
+     * Write the plants of a checkpoint written without them.
+     * @param channel Where to write them.
+     * @param species The species of every plant, in the order they reproduce.
+     * @param cells The packed cell of every plant.
+     * @param dues The growing step every plant is due at, or null if the
+     *             checkpoint is of a simulation whose plants are not scheduled.
+     * @param count The number of plants.
+     * @param width The width of the field.
+     */
+    static void writePlants(WritableByteChannel channel, byte[] species, int[] cells, int[] dues,
+                            int count, int width) throws IOException
+    {
+        Output out = new Output(channel);
+        out.putInt(count);
+        for(int i = 0; i < count; i++) {
+            out.putByte(species[i]);
+            out.putInt(cells[i] / width);
+            out.putInt(cells[i] % width);
+            if(dues != null) {
+                out.putInt(dues[i]);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Read the state of a simulation. The whole checkpoint is read and
+     * checked before anything is changed, so one that is cut short or
+     * damaged leaves the simulation, and the shared generator, as they were.
+     * @param simulator The simulation to restore.
+     * @param channel Where to read it from.
+     */
+    static void read(Simulator simulator, ReadableByteChannel channel) throws IOException
+    {
+        Input in = new Input(channel);
+        Field field = simulator.getField();
+        if(in.getInt() != MAGIC) {
+            throw new IOException("Not a checkpoint.");
+        }
+        int version = in.getInt();
+        if(version != VERSION) {
+            throw new IOException("Cannot read checkpoints of version " + version + ".");
+        }
+        int depth = in.getInt();
+        int width = in.getInt();
+        if(depth != field.getDepth() || width != field.getWidth()) {
+            throw new IOException("The checkpoint is of a " + depth + "x" + width + " field, not a "
+                                  + field.getDepth() + "x" + field.getWidth() + " one.");
+        }
+        int count = in.getInt();
+        boolean sameSpecies = count == Species.count();
+        for(int code = Species.NONE + 1; code < count; code++) {
+            String name = in.getString();
+            sameSpecies = sameSpecies && name.equals(Species.getName(code));
+        }
+        if(!sameSpecies) {
+            throw new IOException("The checkpoint was written with other species.");
+        }
+        Properties config = new Properties();
+        int keys = in.getInt();
+        for(int key = 0; key < keys; key++) {
+            config.setProperty(in.getString(), in.getString());
+        }
+        boolean configure = simulator.getConfiguration().isEmpty();
+        if(!configure && !simulator.getConfiguration().equals(config)) {
+            throw new IOException("The checkpoint was written with another configuration.");
+        }
+
+        int step = in.getInt();
+        long seed = in.getLong();
+        boolean sharedRandom = in.getBoolean();
+        boolean tiled = in.getBoolean();
+        boolean batchNights = in.getBoolean();
+        double density = in.getDouble();
+        boolean scheduled = in.getBoolean();
+        int clock = scheduled ? in.getInt() : 0;
+        Random shared = sharedRandom ? Randomizer.readSharedState(in.getBytes()) : null;
+
+        String weather = in.getString();
+        boolean day = in.getBoolean();
+        int time = in.getInt();
+        boolean held = in.getBoolean();
+        if(step < 0 || time < 0 || clock < 0) {
+            throw new IOException("The checkpoint is damaged: bad step " + step + ".");
+        }
+
+        boolean stored = in.getBoolean();
+        // No cell may hold more than one animal or plant.
+        boolean[] taken = new boolean[depth * width];
+        Animals animals = new Animals(in, field, stored, taken);
+        Plants plants = new Plants(in, field, scheduled, taken);
+
+        // Everything is read; only now is the simulation changed.
+        if(configure) {
+            try {
+                simulator.applyConfiguration(config);
+            }
+            catch(IllegalArgumentException e) {
+                throw new IOException("The checkpoint has a configuration that is not valid.", e);
+            }
+        }
+        if(shared != null) {
+            Randomizer.setSharedState(shared);
+        }
+        simulator.getCondition().restore(weather, day, time, held);
+        simulator.setBatchNights(batchNights);
+        simulator.restore(step, seed, sharedRandom, density, stored, scheduled);
+        PlantScheduler scheduler = simulator.getPlantScheduler();
+        if(scheduler != null) {
+            scheduler.restore(clock);
+        }
+        if(!tiled) {
+            simulator.setThreads(0);
+        }
+        else if(simulator.getThreads() == 0) {
+            simulator.setThreads(Runtime.getRuntime().availableProcessors());
+        }
+        // Making an animal may draw random numbers, which must not
+        // disturb the generators the simulation goes on with.
+        Randomizer.bind(new SplittableRandom(0));
+        try {
+            animals.restore(simulator);
+        }
+        finally {
+            Randomizer.unbind();
+        }
+        plants.restore(simulator);
+    }
+
+    /**
+     * Check the cell of an animal or plant read from a checkpoint, and
+     * note that it is taken.
+     * @param taken Whether each cell is taken so far, by packed cell.
+     * @param width The width of the field.
+     * @param row The row read.
+     * @param col The column read.
+     * @throws IOException If the cell is outside the field or already taken.
+     */
+    private static void take(boolean[] taken, int width, int row, int col) throws IOException
+    {
+        if(row < 0 || col < 0 || col >= width || row >= taken.length / width
+           || taken[row * width + col]) {
+            throw new IOException("The checkpoint is damaged: bad cell " + row + "," + col + ".");
+        }
+        taken[row * width + col] = true;
+    }
+
+    /**
+     * Read a list of ids of animals in a store.
+     * @param in Where to read it from.
+     * @param size The number of animals in the store.
+     * @return The ids.
+     * @throws IOException If an id is not that of an animal in the store.
+     */
+    private static int[] getIds(Input in, int size) throws IOException
+    {
+        int count = in.getInt();
+        if(count < 0 || count > size) {
+            throw new IOException("The checkpoint is damaged: bad number of animals " + count + ".");
+        }
+        int[] ids = new int[count];
+        for(int i = 0; i < count; i++) {
+            ids[i] = in.getInt();
+            if(ids[i] < 0 || ids[i] >= size) {
+                throw new IOException("The checkpoint is damaged: bad animal " + ids[i] + ".");
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Order the males by their place within their bucket of an index of
+     * males, so that adding them in that order puts each back in its place.
+     * @param slots The place of every animal, or -1 if it is not in the index.
+     * @return The positions of the animals in the index, by place.
+     */
+    private static int[] bySlot(int[] slots)
+    {
+        int maxSlot = -1;
+        for(int slot : slots) {
+            maxSlot = Math.max(maxSlot, slot);
+        }
+        int[] starts = new int[maxSlot + 2];
+        for(int slot : slots) {
+            if(slot >= 0) {
+                starts[slot + 1]++;
+            }
+        }
+        for(int slot = 1; slot < starts.length; slot++) {
+            starts[slot] += starts[slot - 1];
+        }
+        int[] order = new int[starts[starts.length - 1]];
+        for(int i = 0; i < slots.length; i++) {
+            if(slots[i] >= 0) {
+                order[starts[slots[i]]++] = i;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * @return An animal's flags.
+     */
+    private static int flags(boolean alive, boolean male, boolean diseased)
+    {
+        return (alive ? ALIVE : 0) | (male ? MALE : 0) | (diseased ? DISEASED : 0);
+    }
+
+    /**
+     * Check a species code read from a checkpoint.
+     * @param code The code.
+     * @param animal true if it must be an animal, false if a plant.
+     * @return The species.
+     * @throws IOException If there is no such species of that kind.
+     */
+    private static Species getSpecies(int code, boolean animal) throws IOException
+    {
+        if(code <= Species.NONE || code >= Species.count() || Species.get(code).isAnimal() != animal) {
+            throw new IOException("The checkpoint is damaged: bad species " + code + ".");
+        }
+        return Species.get(code);
+    }
+
+    /**
+     * The animals of a checkpoint, read and checked but not yet put in
+     * the simulation.
+     */
+    private static class Animals
+    {
+        private boolean stored;
+        private int size;
+        private Species[] species;
+        private int[] flags;
+        private int[] ages;
+        private int[] foods;
+        private int[] rows;
+        private int[] cols;
+        private int[] slots;
+        // For a store: the animals eaten late before each, and the rest
+        // of a night worked out at once.
+        private int[] lateDead;
+        private int[][] onsets;
+        private int[][] deaths;
+
+        /**
+         * Read the animals.
+         * @param in Where to read them from.
+         * @param field The field they are for.
+         * @param stored true if they were kept in a store.
+         * @param taken The cells taken so far, to which theirs are added.
+         */
+        Animals(Input in, Field field, boolean stored, boolean[] taken) throws IOException
+        {
+            this.stored = stored;
+            // An animal kept as an object may be one eaten in the last
+            // step, so there may be up to two for every cell.
+            size = in.getInt();
+            if(size < 0 || size > (stored ? 1 : 2) * taken.length) {
+                throw new IOException("The checkpoint is damaged: bad number of animals " + size + ".");
+            }
+            species = new Species[size];
+            flags = new int[size];
+            ages = new int[size];
+            foods = new int[size];
+            rows = new int[size];
+            cols = new int[size];
+            slots = new int[size];
+            lateDead = stored ? new int[size + 1] : null;
+            for(int i = 0; i < size; i++) {
+                species[i] = getSpecies(in.getByte(), true);
+                flags[i] = in.getByte();
+                ages[i] = in.getInt();
+                foods[i] = in.getInt();
+                rows[i] = in.getInt();
+                cols[i] = in.getInt();
+                slots[i] = in.getInt();
+                if(stored) {
+                    lateDead[i] = getCount(in, taken.length);
+                }
+                boolean alive = stored || (flags[i] & ALIVE) != 0;
+                if(alive) {
+                    take(taken, field.getWidth(), rows[i], cols[i]);
+                }
+                if(slots[i] < -1 || slots[i] >= size || (slots[i] >= 0 && !alive)) {
+                    throw new IOException("The checkpoint is damaged: bad place " + slots[i] + ".");
+                }
+            }
+            if(!stored) {
+                return;
+            }
+            lateDead[size] = getCount(in, taken.length);
+            int steps = in.getInt();
+            if(steps < 0 || steps > AnimalStore.MAX_BATCH) {
+                throw new IOException("The checkpoint is damaged: bad night of " + steps + " steps.");
+            }
+            onsets = new int[steps][];
+            deaths = new int[steps][];
+            for(int step = 0; step < steps; step++) {
+                onsets[step] = getIds(in, size);
+                deaths[step] = getIds(in, size);
+            }
+        }
+
+        /**
+         * Put the animals in a simulation just restored, and the males
+         * back in the index of males in the order they had.
+         * @param simulator The simulation.
+         */
+        void restore(Simulator simulator)
+        {
+            Field field = simulator.getField();
+            if(stored) {
+                AnimalStore store = simulator.getAnimalStore();
+                for(int id = 0; id < size; id++) {
+                    store.restore(species[id].getCode(), (flags[id] & MALE) != 0,
+                                  (flags[id] & DISEASED) != 0, rows[id], cols[id], ages[id], foods[id]);
+                    store.setLateDead(id, lateDead[id]);
+                }
+                store.setLateDead(size, lateDead[size]);
+                for(int id : bySlot(slots)) {
+                    store.indexMale(id);
+                }
+                store.restorePlan(onsets, deaths);
+                return;
+            }
+            List<Animal> animals = simulator.getAnimals();
+            for(int i = 0; i < size; i++) {
+                boolean alive = (flags[i] & ALIVE) != 0;
+                Location location = alive ? new Location(rows[i], cols[i]) : null;
+                String sex = (flags[i] & MALE) != 0 ? "male" : "female";
+                Animal animal = species[i].makeAnimal(false, field, location, sex);
+                animal.restore(ages[i], foods[i], (flags[i] & DISEASED) != 0, alive);
+                animals.add(animal);
+            }
+            MateIndex mates = field.getMateIndex();
+            mates.clear();
+            for(int i : bySlot(slots)) {
+                Animal male = animals.get(i);
+                mates.add(male, male.getRow(), male.getCol());
+            }
+        }
+
+        /**
+         * Read a count of animals eaten late.
+         * @param in Where to read it from.
+         * @param cells The number of cells of the field.
+         * @return The count.
+         */
+        private static int getCount(Input in, int cells) throws IOException
+        {
+            int count = in.getInt();
+            if(count < 0 || count > cells) {
+                throw new IOException("The checkpoint is damaged: bad number of animals " + count + ".");
+            }
+            return count;
+        }
+    }
+
+    /**
+     * The plants of a checkpoint, read and checked but not yet put in
+     * the simulation.
+     */
+    private static class Plants
+    {
+        private int size;
+        private Species[] species;
+        private int[] rows;
+        private int[] cols;
+        // The growing step each is due at, or null if they are not scheduled.
+        private int[] dues;
+
+        /**
+         * Read the plants.
+         * @param in Where to read them from.
+         * @param field The field they are for.
+         * @param scheduled true if they were scheduled.
+         * @param taken The cells taken so far, to which theirs are added.
+         */
+        Plants(Input in, Field field, boolean scheduled, boolean[] taken) throws IOException
+        {
+            size = in.getInt();
+            if(size < 0 || size > taken.length) {
+                throw new IOException("The checkpoint is damaged: bad number of plants " + size + ".");
+            }
+            species = new Species[size];
+            rows = new int[size];
+            cols = new int[size];
+            dues = scheduled ? new int[size] : null;
+            for(int i = 0; i < size; i++) {
+                species[i] = getSpecies(in.getByte(), false);
+                rows[i] = in.getInt();
+                cols[i] = in.getInt();
+                take(taken, field.getWidth(), rows[i], cols[i]);
+                if(scheduled) {
+                    dues[i] = in.getInt();
+                    if(dues[i] < -1) {
+                        throw new IOException("The checkpoint is damaged: bad step " + dues[i] + ".");
+                    }
+                }
+            }
+        }
+
+        /**
+         * Put the plants in a simulation just restored, and in its
+         * scheduler if the plants are scheduled.
+         * @param simulator The simulation.
+         */
+        void restore(Simulator simulator)
+        {
+            Field field = simulator.getField();
+            PlantScheduler scheduler = simulator.getPlantScheduler();
+            List<Plant> plants = simulator.getPlants();
+            for(int i = 0; i < size; i++) {
+                Plant plant = species[i].makePlant(field, new Location(rows[i], cols[i]));
+                plants.add(plant);
+                if(scheduler != null) {
+                    scheduler.put(plant, dues[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Buffers what is written to a channel.
+     */
+    private static class Output
+    {
+        private WritableByteChannel channel;
+        private ByteBuffer buffer;
+
+        /**
+         * @param channel The channel to write to.
+         */
+        Output(WritableByteChannel channel)
+        {
+            this.channel = channel;
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        /**
+         * Make room in the buffer for the given number of bytes.
+         */
+        private void room(int bytes) throws IOException
+        {
+            if(buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        /**
+         * Write everything in the buffer to the channel.
+         */
+        void flush() throws IOException
+        {
+            buffer.flip();
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void putByte(int value) throws IOException
+        {
+            room(1);
+            buffer.put((byte) value);
+        }
+
+        void putBoolean(boolean value) throws IOException
+        {
+            putByte(value ? 1 : 0);
+        }
+
+        void putInt(int value) throws IOException
+        {
+            room(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException
+        {
+            room(8);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException
+        {
+            room(8);
+            buffer.putDouble(value);
+        }
+
+        /**
+         * Write the length of an array of bytes and then the bytes.
+         */
+        void putBytes(byte[] bytes) throws IOException
+        {
+            putInt(bytes.length);
+            flush();
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+            while(wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+        }
+
+        void putString(String value) throws IOException
+        {
+            putBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Buffers what is read from a channel.
+     */
+    private static class Input
+    {
+        private ReadableByteChannel channel;
+        private ByteBuffer buffer;
+
+        /**
+         * @param channel The channel to read from.
+         */
+        Input(ReadableByteChannel channel)
+        {
+            this.channel = channel;
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip();
+        }
+
+        /**
+         * Make sure the buffer holds at least the given number of bytes.
+         * @throws EOFException If the channel ends first.
+         */
+        private void need(int bytes) throws IOException
+        {
+            if(buffer.remaining() < bytes) {
+                buffer.compact();
+                while(buffer.position() < bytes) {
+                    if(channel.read(buffer) < 0) {
+                        throw new EOFException("The checkpoint ends too soon.");
+                    }
+                }
+                buffer.flip();
+            }
+        }
+
+        int getByte() throws IOException
+        {
+            need(1);
+            return buffer.get();
+        }
+
+        boolean getBoolean() throws IOException
+        {
+            return getByte() != 0;
+        }
+
+        int getInt() throws IOException
+        {
+            need(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException
+        {
+            need(8);
+            return buffer.getLong();
+        }
+
+        double getDouble() throws IOException
+        {
+            need(8);
+            return buffer.getDouble();
+        }
+
+        /**
+         * Read an array of bytes written by Output.putBytes.
+         */
+        byte[] getBytes() throws IOException
+        {
+            int length = getInt();
+            if(length < 0 || length > MAX_BLOCK) {
+                throw new IOException("The checkpoint is damaged: bad length " + length + ".");
+            }
+            byte[] bytes = new byte[length];
+            int done = 0;
+            while(done < length) {
+                int chunk = Math.min(length - done, BUFFER_SIZE);
+                need(chunk);
+                buffer.get(bytes, done, chunk);
+                done += chunk;
+            }
+            return bytes;
+        }
+
+        String getString() throws IOException
+        {
+            return new String(getBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,561 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An append-only log of checkpoints of one simulation, for cheap rewind
+ * and crash recovery on long runs. Attach it as an observer and it writes
+ * a checkpoint every so many steps:
+ * <pre>
+ *   CheckpointLog log = new CheckpointLog(simulator, "run.log", 50, 20);
+ *   simulator.addObserver(log);
+ * </pre>
+ * Most checkpoints are deltas holding only what changed since the one
+ * before; every so many of them is a full keyframe. Seeking to a step
+ * loads the nearest keyframe before it, replays the deltas up to the
+ * last checkpoint before it, and then runs the remaining steps, which
+ * gives exactly the state the run had at that step.
+ *
+ * Which plants changed is taken from the cells the field reports as
+ * changed (see Field.hasChanged): a plant on an unchanged cell is the
+ * plant that was there at the last checkpoint, so a delta just refers to
+ * it, and only the plants on changed cells are written. Every animal
+ * ages and gets hungrier each step, so the animals and the rest of the
+ * state are written in full, as Checkpoint writes them. So are the
+ * growing steps the plants are due at, if they are scheduled, as a
+ * plant is due at another step every time it reproduces. Every frame is
+ * compressed with Deflater. The log owns the field's change set and
+ * clears it after every checkpoint.
+ *
+ * A frame is a kind, a step, the length of the compressed data, a CRC32
+ * of it and the length of the data, followed by the compressed data.
+ * When the log is opened, a frame cut short or damaged by a crash is
+ * dropped along with anything after it.
+ * Every step is recorded once: steps run again after a rewind are not
+ * written again unless the log is first truncated with truncateAfter.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class CheckpointLog implements SimulationObserver
+{
+    // Kinds of frame.
+    private static final int KEYFRAME = 0;
+    private static final int DELTA = 1;
+    // The bytes in front of the data of a frame: its kind, step,
+    // compressed length, checksum and length.
+    private static final int FRAME_HEADER = 1 + 4 + 4 + 4 + 4;
+    // Kinds of entry in the plants of a delta.
+    private static final int COPY = 0;
+    private static final int NEW = 1;
+
+    // The simulation the checkpoints are of.
+    private Simulator simulator;
+    // The file the log is kept in.
+    private FileChannel channel;
+    // The number of steps between checkpoints.
+    private int interval;
+    // The number of checkpoints from one keyframe to the next.
+    private int keyframeInterval;
+    // The frames in the file, in order.
+    private List<Frame> frames;
+    // The number of deltas written since the last keyframe, or -1 if the
+    // next checkpoint must be a keyframe.
+    private int deltas;
+    // The cells of the plants at the last checkpoint written, and for
+    // every cell the position of its plant there, or -1.
+    private int[] plantCells;
+    private int plantCount;
+    private int[] plantIndex;
+
+    /**
+     * Open a log, creating the file if there is none. The frames already
+     * in it are kept, except any cut short by a crash.
+     * @param simulator The simulation to record.
+     * @param fileName The name of the file.
+     * @param interval The number of steps between checkpoints.
+     * @param keyframeInterval The number of checkpoints from one keyframe
+     *                         to the next.
+     * @throws IOException If the file cannot be opened.
+     */
+    public CheckpointLog(Simulator simulator, String fileName, int interval, int keyframeInterval)
+        throws IOException
+    {
+        if(interval <= 0 || keyframeInterval <= 0) {
+            throw new IllegalArgumentException("The intervals must be greater than zero.");
+        }
+        this.simulator = simulator;
+        this.interval = interval;
+        this.keyframeInterval = keyframeInterval;
+        channel = FileChannel.open(Path.of(fileName), StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+        frames = new ArrayList<>();
+        deltas = -1;
+        Field field = simulator.getField();
+        plantCells = new int[0];
+        plantIndex = new int[field.getDepth() * field.getWidth()];
+        Arrays.fill(plantIndex, -1);
+        scan();
+    }
+
+    /**
+     * Record a checkpoint if the step is one to record.
+     * @param step Which iteration step it is.
+     * @param field The field of the simulation.
+     * @param condition The current weather and time of day.
+     */
+    public void showStatus(int step, Field field, Condition condition)
+    {
+        if(step % interval == 0 && step > getLastStep()) {
+            try {
+                record();
+            }
+            catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Append a checkpoint of the simulation as it is now.
+     * @throws IOException If the log cannot be written.
+     * @throws IllegalStateException If the log already goes up to this step.
+     */
+    public void record() throws IOException
+    {
+        int step = simulator.getStep();
+        if(step <= getLastStep()) {
+            throw new IllegalStateException("The log already goes up to step " + getLastStep() + ".");
+        }
+        boolean keyframe = deltas < 0 || deltas + 1 >= keyframeInterval;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        Checkpoint.write(simulator, Channels.newChannel(state), false);
+        data.writeInt(state.size());
+        state.writeTo(data);
+
+        Field field = simulator.getField();
+        int width = field.getWidth();
+        List<Plant> plants = simulator.getPlants();
+        int count = 0;
+        for(Plant plant : plants) {
+            count += plant.isAlive() ? 1 : 0;
+        }
+        byte[] species = new byte[count];
+        int[] cells = new int[count];
+        PlantScheduler scheduler = simulator.getPlantScheduler();
+        int[] dues = scheduler != null ? new int[count] : null;
+        int live = 0;
+        for(Plant plant : plants) {
+            // Plants that died may not have been dropped from the list yet.
+            if(!plant.isAlive()) {
+                continue;
+            }
+            species[live] = (byte) plant.getSpecies();
+            cells[live] = plant.getRow() * width + plant.getCol();
+            if(dues != null) {
+                dues[live] = scheduler.getDue(plant);
+            }
+            live++;
+        }
+        if(keyframe) {
+            data.writeInt(count);
+            for(int i = 0; i < count; i++) {
+                data.writeByte(species[i]);
+                data.writeInt(cells[i]);
+            }
+        }
+        else {
+            writePlantChanges(data, field, species, cells, count);
+        }
+        data.writeBoolean(dues != null);
+        if(dues != null) {
+            for(int i = 0; i < count; i++) {
+                data.writeInt(dues[i]);
+            }
+        }
+        data.flush();
+
+        append(keyframe ? KEYFRAME : DELTA, step, bytes.toByteArray());
+        deltas = keyframe ? 0 : deltas + 1;
+        setPlants(cells, count);
+        field.clearChanges();
+    }
+
+    /**
+     * Write the plants as a list of runs of plants from the last
+     * checkpoint and new plants.
+     */
+    private void writePlantChanges(DataOutputStream data, Field field, byte[] species, int[] cells,
+                                   int count) throws IOException
+    {
+        int width = field.getWidth();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream entries = new DataOutputStream(bytes);
+        int entryCount = 0;
+        int i = 0;
+        while(i < count) {
+            int from = oldIndex(field, cells[i], width);
+            if(from < 0) {
+                entries.writeByte(NEW);
+                entries.writeByte(species[i]);
+                entries.writeInt(cells[i]);
+                i++;
+            }
+            else {
+                int length = 1;
+                while(i + length < count && oldIndex(field, cells[i + length], width) == from + length) {
+                    length++;
+                }
+                entries.writeByte(COPY);
+                entries.writeInt(from);
+                entries.writeInt(length);
+                i += length;
+            }
+            entryCount++;
+        }
+        entries.flush();
+        data.writeInt(count);
+        data.writeInt(entryCount);
+        bytes.writeTo(data);
+    }
+
+    /**
+     * @return The position at the last checkpoint of the plant on a cell,
+     *         or -1 if the cell has changed since and so holds a new plant.
+     */
+    private int oldIndex(Field field, int cell, int width)
+    {
+        if(field.hasChanged(cell / width, cell % width)) {
+            return -1;
+        }
+        return plantIndex[cell];
+    }
+
+    /**
+     * Remember the plants of the checkpoint just written.
+     */
+    private void setPlants(int[] cells, int count)
+    {
+        for(int i = 0; i < plantCount; i++) {
+            plantIndex[plantCells[i]] = -1;
+        }
+        for(int i = 0; i < count; i++) {
+            plantIndex[cells[i]] = i;
+        }
+        plantCells = cells;
+        plantCount = count;
+    }
+
+    /**
+     * Put the simulation in the state it had at the given step: load the
+     * last keyframe before it, replay the deltas up to the last checkpoint
+     * before it, and run the steps after that.
+     * @param step The step to go to.
+     * @throws IOException If there is no checkpoint at or before the step,
+     *                     or the log cannot be read; the simulation is
+     *                     then left as it was.
+     */
+    public void seek(int step) throws IOException
+    {
+        int last = -1;
+        for(int f = 0; f < frames.size() && frames.get(f).step <= step; f++) {
+            last = f;
+        }
+        if(last < 0) {
+            throw new IOException("There is no checkpoint at or before step " + step + ".");
+        }
+        int first = last;
+        while(frames.get(first).kind != KEYFRAME) {
+            first--;
+        }
+
+        byte[] state = null;
+        byte[] species = new byte[0];
+        int[] cells = new int[0];
+        int[] dues = null;
+        int count = 0;
+        for(int f = first; f <= last; f++) {
+            byte[] frame = readFrame(f);
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(frame));
+            int length = data.readInt();
+            if(length < 0 || length > frame.length) {
+                throw damaged(f);
+            }
+            state = new byte[length];
+            data.readFully(state);
+            int newCount = data.readInt();
+            if(newCount < 0 || newCount > plantIndex.length) {
+                throw damaged(f);
+            }
+            byte[] newSpecies = new byte[newCount];
+            int[] newCells = new int[newCount];
+            if(frames.get(f).kind == KEYFRAME) {
+                for(int i = 0; i < newCount; i++) {
+                    newSpecies[i] = data.readByte();
+                    newCells[i] = data.readInt();
+                }
+            }
+            else {
+                int entries = data.readInt();
+                int i = 0;
+                for(int e = 0; e < entries; e++) {
+                    if(data.readByte() == NEW) {
+                        if(i == newCount) {
+                            throw damaged(f);
+                        }
+                        newSpecies[i] = data.readByte();
+                        newCells[i] = data.readInt();
+                        i++;
+                    }
+                    else {
+                        int from = data.readInt();
+                        int run = data.readInt();
+                        if(from < 0 || run < 0 || from + run > count || i + run > newCount) {
+                            throw damaged(f);
+                        }
+                        System.arraycopy(species, from, newSpecies, i, run);
+                        System.arraycopy(cells, from, newCells, i, run);
+                        i += run;
+                    }
+                }
+                if(i != newCount) {
+                    throw damaged(f);
+                }
+            }
+            species = newSpecies;
+            cells = newCells;
+            count = newCount;
+            dues = null;
+            if(data.readBoolean()) {
+                dues = new int[count];
+                for(int i = 0; i < count; i++) {
+                    dues[i] = data.readInt();
+                }
+            }
+        }
+
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        image.write(state);
+        Checkpoint.writePlants(Channels.newChannel(image), species, cells, dues, count,
+                               simulator.getField().getWidth());
+        simulator.loadCheckpoint(Channels.newChannel(new ByteArrayInputStream(image.toByteArray())));
+        // The next checkpoint cannot be a delta against this one, as it
+        // may not be the last one in the log.
+        deltas = -1;
+        while(simulator.getStep() < step) {
+            simulator.simulateOneStep();
+        }
+    }
+
+    /**
+     * Drop every checkpoint after the given step, e.g. to record another
+     * course of the run from there.
+     * @param step The last step to keep.
+     * @throws IOException If the log cannot be truncated.
+     */
+    public void truncateAfter(int step) throws IOException
+    {
+        int keep = 0;
+        while(keep < frames.size() && frames.get(keep).step <= step) {
+            keep++;
+        }
+        if(keep < frames.size()) {
+            channel.truncate(frames.get(keep).position);
+            frames.subList(keep, frames.size()).clear();
+            deltas = -1;
+        }
+    }
+
+    /**
+     * @return The steps there are checkpoints of, in order.
+     */
+    public int[] getSteps()
+    {
+        int[] steps = new int[frames.size()];
+        for(int f = 0; f < steps.length; f++) {
+            steps[f] = frames.get(f).step;
+        }
+        return steps;
+    }
+
+    /**
+     * @return The last step there is a checkpoint of, or -1 if there is none.
+     */
+    public int getLastStep()
+    {
+        return frames.isEmpty() ? -1 : frames.get(frames.size() - 1).step;
+    }
+
+    /**
+     * Close the file of the log.
+     * @throws IOException If the file cannot be closed.
+     */
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Compress the data of a frame and append it to the file.
+     */
+    private void append(int kind, int step, byte[] data) throws IOException
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+        byte[] chunk = new byte[1 << 16];
+        while(!deflater.finished()) {
+            compressed.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(compressed.toByteArray());
+
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER + compressed.size());
+        frame.put((byte) kind);
+        frame.putInt(step);
+        frame.putInt(compressed.size());
+        frame.putInt((int) crc.getValue());
+        frame.putInt(data.length);
+        frame.put(compressed.toByteArray());
+        frame.flip();
+        long position = channel.size();
+        while(frame.hasRemaining()) {
+            channel.write(frame, position + frame.position());
+        }
+        frames.add(new Frame(kind, step, position));
+    }
+
+    /**
+     * Read and decompress the data of a frame.
+     */
+    private byte[] readFrame(int f) throws IOException
+    {
+        long position = frames.get(f).position;
+        ByteBuffer header = read(position, FRAME_HEADER);
+        header.position(5);
+        int length = header.getInt();
+        header.getInt();
+        int size = header.getInt();
+        ByteBuffer compressed = read(position + FRAME_HEADER, length);
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        byte[] data = new byte[size];
+        try {
+            int done = 0;
+            while(done < size && !inflater.finished()) {
+                done += inflater.inflate(data, done, size - done);
+            }
+            if(done != size) {
+                throw damaged(f);
+            }
+        }
+        catch(DataFormatException e) {
+            throw new IOException("The log is damaged at step " + frames.get(f).step + ".", e);
+        }
+        finally {
+            inflater.end();
+        }
+        return data;
+    }
+
+    /**
+     * Find the frames in the file, and cut off any frame left incomplete
+     * or damaged by a crash, with everything after it.
+     */
+    private void scan() throws IOException
+    {
+        long size = channel.size();
+        long position = 0;
+        while(position + FRAME_HEADER <= size) {
+            ByteBuffer header = read(position, FRAME_HEADER);
+            int kind = header.get();
+            int step = header.getInt();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            long end = position + FRAME_HEADER + length;
+            if((kind != KEYFRAME && kind != DELTA) || length < 0 || end > size
+               || (frames.isEmpty() && kind != KEYFRAME) || step <= getLastStep()) {
+                break;
+            }
+            ByteBuffer compressed = read(position + FRAME_HEADER, length);
+            CRC32 crc = new CRC32();
+            crc.update(compressed);
+            if((int) crc.getValue() != checksum) {
+                break;
+            }
+            frames.add(new Frame(kind, step, position));
+            position = end;
+        }
+        if(position < size) {
+            channel.truncate(position);
+        }
+    }
+
+    /**
+     * @param f A frame.
+     * @return The exception for the frame being damaged.
+     */
+    private IOException damaged(int f)
+    {
+        return new IOException("The log is damaged at step " + frames.get(f).step + ".");
+    }
+
+    /**
+     * Read bytes from the file.
+     * @param position Where in the file they start.
+     * @param length How many there are.
+     * @return A buffer holding them, ready to be read.
+     */
+    private ByteBuffer read(long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("The log ends too soon.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Where a frame is in the file, and what it is.
+     */
+    private static class Frame
+    {
+        private int kind;
+        private int step;
+        private long position;
+
+        /**
+         * @param kind KEYFRAME or DELTA.
+         * @param step The step the frame is a checkpoint of.
+         * @param position Where in the file the frame starts.
+         */
+        Frame(int kind, int step, long position)
+        {
+            this.kind = kind;
+            this.step = step;
+            this.position = position;
+        }
+    }
+}
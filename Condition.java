@@ -1,4 +1,4 @@
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Condition class that changes day time and weather.
@@ -22,12 +22,17 @@ public class Condition
    private static final double DRY_PROBABILITY = 0.2;
    //likelihood of a fog on this step(STEP, not day).
    private static final double FOG_PROBABILITY = 0.3;
-   //Random generator for choosing weather
-   private Random rand;
+   //The likelihoods of rain, dry weather and fog used by this condition,
+   //which start as the ones above (see setProbabilities).
+   private double rainProbability = RAIN_PROBABILITY;
+   private double dryProbability = DRY_PROBABILITY;
+   private double fogProbability = FOG_PROBABILITY;
    //Counting number of full days past since the start of the simulation
    private int dayNumber;
    //How many steps have past since the start of the simulation
    private int currentTime;
+   //Whether weather and time of day are held as they are (see hold)
+   private boolean held;
    
    /**
     * Constructor of condition class.
@@ -48,14 +53,17 @@ public class Condition
     */
    public void changeWeather()
    {
-       Random rand = Randomizer.getRandom();
-       if (rand.nextDouble() <= RAIN_PROBABILITY){
+       if(held){
+           return;
+       }
+       RandomGenerator rand = Randomizer.current();
+       if (rand.nextDouble() <= rainProbability){
            type = "rain";
         }
-       else if(rand.nextDouble() <= DRY_PROBABILITY){
+       else if(rand.nextDouble() <= dryProbability){
            type = "dry";
        }
-       else if(rand.nextDouble() <= FOG_PROBABILITY){
+       else if(rand.nextDouble() <= fogProbability){
            type = "fog";
         }
        else{
@@ -63,6 +71,44 @@ public class Condition
        }
    }
    
+   /**
+    * Change how likely each weather is. Each is tried in turn on every
+    * step, so dry weather is only tried when it does not rain, and so on.
+    * @param rain The likelihood of rain on a step.
+    * @param dry The likelihood of dry weather when it does not rain.
+    * @param fog The likelihood of fog when it is neither rainy nor dry.
+    */
+   public void setProbabilities(double rain, double dry, double fog)
+   {
+       rainProbability = rain;
+       dryProbability = dry;
+       fogProbability = fog;
+   }
+   
+   /**
+    * @Return the likelihood of rain on a step.
+    */
+   public double getRainProbability()
+   {
+       return rainProbability;
+   }
+   
+   /**
+    * @Return the likelihood of dry weather when it does not rain.
+    */
+   public double getDryProbability()
+   {
+       return dryProbability;
+   }
+   
+   /**
+    * @Return the likelihood of fog when it is neither rainy nor dry.
+    */
+   public double getFogProbability()
+   {
+       return fogProbability;
+   }
+   
    /**
     * @Return the weather type.
     */
@@ -102,15 +148,70 @@ public class Condition
    public void incrementTime()
    {
        currentTime++;
-       if(currentTime % dayAndNight < dayLength){
+       // A held time of day is kept as it is.
+       if(!held && currentTime % dayAndNight < dayLength){
            day = true;
        }
-       else{
+       else if(!held){
            day = false;
        }
        dayNumber = currentTime / 8;
    }
    
+   /**
+    * Keep the given weather and time of day from now on,
+    * e.g. to measure steps under one condition only.
+    * Steps are still counted.
+    * @param weather The weather type: "warm", "rain", "dry" or "fog".
+    * @param day true for day, false for night.
+    */
+   public void hold(String weather, boolean day)
+   {
+       type = weather;
+       this.day = day;
+       held = true;
+   }
+   
+   /**
+    * Let weather and time of day change again after hold.
+    */
+   public void release()
+   {
+       held = false;
+   }
+   
+   /**
+    * @Return How many steps have past since the start of the simulation.
+    */
+   public int getTime()
+   {
+       return currentTime;
+   }
+   
+   /**
+    * @Return true if weather and time of day are held (see hold).
+    */
+   public boolean isHeld()
+   {
+       return held;
+   }
+   
+   /**
+    * Put the condition back as it was when a checkpoint was written.
+    * @param weather The weather type.
+    * @param day true for day, false for night.
+    * @param time How many steps had past.
+    * @param held Whether weather and time of day were held.
+    */
+   void restore(String weather, boolean day, int time, boolean held)
+   {
+       type = weather;
+       this.day = day;
+       currentTime = time;
+       dayNumber = time / 8;
+       this.held = held;
+   }
+   
    /**
     * @Return true if it is day, false if night.
     */
@@ -119,6 +220,21 @@ public class Condition
       return day; 
    }   
    
+   /**
+    * @Return How many steps the night goes on for, this one included,
+    *         or 0 by day. A held night never ends.
+    */
+   public int nightStepsLeft()
+   {
+       if(day){
+           return 0;
+       }
+       if(held){
+           return Integer.MAX_VALUE;
+       }
+       return dayAndNight - currentTime % dayAndNight;
+   }
+   
    /**
     * @Return number of days
     */
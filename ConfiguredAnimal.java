@@ -0,0 +1,24 @@
+/**
+ * An animal of a species that was added by a configuration file
+ * (see Species.load) rather than having a class of its own.
+ * It lives entirely by its species' entry in Species.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class ConfiguredAnimal extends Animal
+{
+    /**
+     * Create an animal of a configured species.
+     *
+     * @param species The species code of the animal.
+     * @param randomAge If true, the animal will have random age and hunger level.
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @param sex The String sex, either male or female.
+     */
+    public ConfiguredAnimal(int species, boolean randomAge, Field field, Location location, String sex)
+    {
+        super(species, randomAge, field, location, sex);
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.List;
+import java.util.random.RandomGenerator;
 
 /**
  * Simple model of Cycad.
@@ -21,21 +22,23 @@ public class Cycad extends Plant
         REPRODUCTION_PROBABILITY = 0.2;
     }
     
+    /**
+     * @return The species code of cycad.
+     */
+    public int getSpecies()
+    {
+        return Species.CYCAD;
+    }
+    
     /**
      * gets all free locations around the cycad and adds more in the adjacent locations
      * @param a list of all the new cycads created
      */
     public void reproduce(List<Plant> newCycads)
     {
-        if(isAlive() && rand.nextDouble() <= REPRODUCTION_PROBABILITY){        
-            Field field = getField();
-            List<Location> free = field.getFreeAdjacentLocations(getLocation()); 
-            int greens = rand.nextInt(MAX_LITTER_SIZE) + 1;
-            for(int g = 0; g < greens && free.size() > 0; g++){
-                Location loc = free.remove(0);
-                Cycad cycad = new Cycad(field, loc);
-                newCycads.add(cycad);
-            }
+        RandomGenerator rand = Randomizer.current();
+        if(isAlive() && rand.nextDouble() <= REPRODUCTION_PROBABILITY){
+            spread(newCycads);
         }
     }
 }
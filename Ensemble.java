@@ -0,0 +1,377 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs many replicas of the same scenario with different seeds at once,
+ * one headless simulation per replica, on a work-stealing pool with a
+ * thread per core. Every replica draws its random numbers from streams
+ * of its own seed (see Simulator(int, int, long)), so replicas share no
+ * mutable state and a replica gives the same result on any thread.
+ *
+ * A replica runs until the simulation is no longer viable or the number
+ * of steps is reached. The populations of every step are summed over
+ * the replicas still running at that step, and the step at which every
+ * species died out is kept for each replica, e.g. to put confidence
+ * intervals on extinction times. A run can be cancelled from another
+ * thread, and reports its progress as replicas finish.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class Ensemble
+{
+    // The depth and width of the field of every replica.
+    private int depth;
+    private int width;
+    // The most steps a replica runs for.
+    private int steps;
+    // The number of threads replicas are run on.
+    private int threads;
+    // Sets up every replica before it is populated, or null.
+    private Consumer<Simulator> scenario;
+    // Told about every replica that finishes, or null.
+    private Progress progress;
+    // Set to stop a run early.
+    private volatile boolean cancelled;
+    // The number of replicas of the current run that have finished.
+    private AtomicInteger finished;
+
+    /**
+     * Create an ensemble of simulations of the given size.
+     * @param depth The depth of the field of every replica.
+     * @param width The width of the field of every replica.
+     * @param steps The most steps a replica runs for.
+     */
+    public Ensemble(int depth, int width, int steps)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        threads = Runtime.getRuntime().availableProcessors();
+        finished = new AtomicInteger();
+    }
+
+    /**
+     * Run replicas of a scenario and print when each species died out,
+     * on average and with a 95% confidence interval.
+     * @param args Optionally the number of replicas, the number of steps
+     *             and the side of the square field.
+     */
+    public static void main(String[] args)
+    {
+        int replicas = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        Ensemble ensemble = new Ensemble(size, size, steps);
+        ensemble.setProgress((done, total) -> System.err.print("\r" + done + "/" + total));
+        long start = System.nanoTime();
+        Result result = ensemble.run(1, replicas);
+        System.err.println();
+        System.out.printf("%d replicas of %d steps in %.1f s%n", result.getReplicas(), steps,
+                          (System.nanoTime() - start) / 1e9);
+        for(int species = Species.NONE + 1; species < Species.count(); species++) {
+            System.out.printf("%-8s died out in %3d replicas, at step %8.1f +- %.1f%n",
+                              Species.getName(species), result.getExtinctions(species),
+                              result.getMeanExtinctionStep(species),
+                              result.getExtinctionInterval(species));
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Set the number of threads replicas are run on.
+     * @param threads The number of threads; one per core by default.
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = Math.max(threads, 1);
+    }
+
+    /**
+     * Set up every replica in the same way, e.g. with a density or an
+     * animal store. The replica is populated again afterwards.
+     * @param scenario Called with every replica before it runs.
+     */
+    public void setScenario(Consumer<Simulator> scenario)
+    {
+        this.scenario = scenario;
+    }
+
+    /**
+     * Have a run report its progress.
+     * @param progress Told about every replica that finishes, from the
+     *                 thread that ran it.
+     */
+    public void setProgress(Progress progress)
+    {
+        this.progress = progress;
+    }
+
+    /**
+     * Stop the current run as soon as possible. Replicas not yet finished
+     * are left out of its result.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * @return The number of replicas of the current run that have finished.
+     */
+    public int getFinished()
+    {
+        return finished.get();
+    }
+
+    /**
+     * Run replicas with the seeds firstSeed, firstSeed + 1 and so on,
+     * and wait for them all to finish or the run to be cancelled.
+     * @param firstSeed The seed of the first replica.
+     * @param replicas The number of replicas.
+     * @return The populations and extinctions of the finished replicas.
+     */
+    public Result run(long firstSeed, int replicas)
+    {
+        cancelled = false;
+        finished.set(0);
+        Result result = new Result(steps, replicas);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for(int replica = 0; replica < replicas; replica++) {
+            int index = replica;
+            tasks.add(() -> {
+                runReplica(firstSeed, index, result, replicas);
+                return null;
+            });
+        }
+        try {
+            Replica.runAll(tasks, threads);
+        }
+        catch(ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return result;
+    }
+
+    /**
+     * Run one replica and add it to the result, unless the run is cancelled.
+     * @param firstSeed The seed of the first replica of the run.
+     * @param replica The index of the replica in the run.
+     * @param result The result of the run.
+     * @param replicas The number of replicas in the run.
+     */
+    private void runReplica(long firstSeed, int replica, Result result, int replicas)
+    {
+        if(cancelled) {
+            return;
+        }
+        Simulator simulator = new Simulator(depth, width, firstSeed + replica);
+        if(scenario != null) {
+            scenario.accept(simulator);
+            simulator.reset();
+        }
+        Field field = simulator.getField();
+        int[][] populations = new int[steps + 1][];
+        Replica run = Replica.run(simulator, steps, () -> cancelled, step -> {
+            int[] population = new int[Species.count()];
+            for(int species = Species.NONE + 1; species < population.length; species++) {
+                population[species] = field.getCount(species);
+            }
+            populations[step] = population;
+        });
+        if(run == null) {
+            return;
+        }
+        result.add(replica, populations, run.getLastStep(), run.getExtinctionSteps());
+        int done = finished.incrementAndGet();
+        if(progress != null) {
+            progress.replicaFinished(done, replicas);
+        }
+    }
+
+    /**
+     * Told about the progress of a run.
+     */
+    public interface Progress
+    {
+        /**
+         * A replica has finished.
+         * @param finished The number of replicas finished so far.
+         * @param replicas The number of replicas in the run.
+         */
+        void replicaFinished(int finished, int replicas);
+    }
+
+    /**
+     * The populations and extinctions of the replicas of a run.
+     */
+    public static class Result
+    {
+        // The sum over the replicas running at each step of the
+        // population of each species, and of its square.
+        private double[][] sums;
+        private double[][] squares;
+        // The number of replicas still running at each step.
+        private int[] running;
+        // The step each species died out at in each replica, or -1,
+        // by the index of the replica; null for one that has not finished.
+        private int[][] extinctions;
+        // The number of replicas that finished.
+        private int finished;
+
+        /**
+         * Create an empty result.
+         * @param steps The most steps a replica runs for.
+         * @param replicas The number of replicas expected.
+         */
+        Result(int steps, int replicas)
+        {
+            sums = new double[steps + 1][Species.count()];
+            squares = new double[steps + 1][Species.count()];
+            running = new int[steps + 1];
+            extinctions = new int[replicas][];
+        }
+
+        /**
+         * Add a finished replica.
+         * @param replica The index of the replica in the run.
+         * @param populations The population of every species at every step.
+         * @param last The last step the replica ran.
+         * @param died The step each species died out at, or -1.
+         */
+        synchronized void add(int replica, int[][] populations, int last, int[] died)
+        {
+            for(int step = 0; step <= last; step++) {
+                running[step]++;
+                for(int species = Species.NONE + 1; species < populations[step].length; species++) {
+                    double population = populations[step][species];
+                    sums[step][species] += population;
+                    squares[step][species] += population * population;
+                }
+            }
+            extinctions[replica] = died;
+            finished++;
+        }
+
+        /**
+         * @return The number of replicas that finished.
+         */
+        public synchronized int getReplicas()
+        {
+            return finished;
+        }
+
+        /**
+         * @param step A step.
+         * @return The number of replicas still running at that step.
+         */
+        public synchronized int getRunning(int step)
+        {
+            return running[step];
+        }
+
+        /**
+         * @param step A step.
+         * @param species A species code.
+         * @return The mean population over the replicas running at the step.
+         */
+        public synchronized double getMean(int step, int species)
+        {
+            return running[step] == 0 ? 0 : sums[step][species] / running[step];
+        }
+
+        /**
+         * @param step A step.
+         * @param species A species code.
+         * @return The standard deviation of the population over the
+         *         replicas running at the step.
+         */
+        public synchronized double getStandardDeviation(int step, int species)
+        {
+            int n = running[step];
+            if(n < 2) {
+                return 0;
+            }
+            double mean = sums[step][species] / n;
+            return Math.sqrt(Math.max(squares[step][species] / n - mean * mean, 0) * n / (n - 1));
+        }
+
+        /**
+         * @param species A species code.
+         * @return The step the species died out at in every finished
+         *         replica, or -1 where it did not, in the order of the
+         *         replicas' seeds however they finished.
+         */
+        public synchronized int[] getExtinctionSteps(int species)
+        {
+            int[] steps = new int[finished];
+            int next = 0;
+            for(int[] died : extinctions) {
+                if(died != null) {
+                    steps[next++] = died[species];
+                }
+            }
+            return steps;
+        }
+
+        /**
+         * @param species A species code.
+         * @return The number of replicas in which the species died out.
+         */
+        public int getExtinctions(int species)
+        {
+            int count = 0;
+            for(int step : getExtinctionSteps(species)) {
+                if(step >= 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @param species A species code.
+         * @return The mean step the species died out at, over the replicas
+         *         in which it did, or NaN if it never did.
+         */
+        public double getMeanExtinctionStep(int species)
+        {
+            double sum = 0;
+            int count = 0;
+            for(int step : getExtinctionSteps(species)) {
+                if(step >= 0) {
+                    sum += step;
+                    count++;
+                }
+            }
+            return count == 0 ? Double.NaN : sum / count;
+        }
+
+        /**
+         * @param species A species code.
+         * @return Half the width of a 95% confidence interval around the
+         *         mean extinction step, by the normal approximation, or
+         *         NaN if the species died out in fewer than two replicas.
+         */
+        public double getExtinctionInterval(int species)
+        {
+            double mean = getMeanExtinctionStep(species);
+            double squares = 0;
+            int count = 0;
+            for(int step : getExtinctionSteps(species)) {
+                if(step >= 0) {
+                    squares += (step - mean) * (step - mean);
+                    count++;
+                }
+            }
+            if(count < 2) {
+                return Double.NaN;
+            }
+            return 1.96 * Math.sqrt(squares / (count - 1) / count);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.Arrays;
+
+/**
+ * Keeps dead animals and plants of a field so that new ones of the same
+ * species can be made out of them instead of allocating new objects.
+ * Over a long run most objects the simulation makes are animals and
+ * plants that live for a few steps, and reusing them keeps that churn,
+ * and the garbage collections it causes, down.
+ *
+ * An animal or plant may only be released once nothing refers to it
+ * any more: it is dead, out of the field and out of every list. The
+ * simulator releases them as it drops them from its lists. A reused
+ * one is set up just as the constructor sets up a new one, drawing the
+ * same random numbers, so a run is the same with or without a pool.
+ *
+ * The pool is not thread safe; see Field.makeAnimal.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class EntityPool
+{
+    // The most dead objects of one species that are kept; the rest are
+    // left to the garbage collector, so a die-off does not keep its dead
+    // for ever.
+    private static final int LIMIT = 1 << 16;
+    // Room for dead objects of a species when it is first used.
+    private static final int INITIAL_CAPACITY = 64;
+
+    // The dead objects of every species, indexed by species code.
+    private Object[][] free;
+    // How many dead objects of each species are kept, indexed by code.
+    private int[] sizes;
+    // How many objects were made out of dead ones, and how many afresh.
+    private long reused;
+    private long made;
+
+    /**
+     * Create an empty pool.
+     */
+    public EntityPool()
+    {
+        free = new Object[Species.count()][];
+        sizes = new int[Species.count()];
+    }
+
+    /**
+     * Make an animal, out of a dead one of the same species if there is
+     * one.
+     * @param field The field to put it in.
+     * @param code The species code of the animal.
+     * @param randomAge true for a random age, false for a newborn.
+     * @param location A free location to put it at.
+     * @param sex The sex of the animal, either male or female.
+     * @return The new animal.
+     */
+    public Animal makeAnimal(Field field, int code, boolean randomAge, Location location, String sex)
+    {
+        Animal animal = (Animal) take(code);
+        if(animal == null) {
+            made++;
+            return field.getSpecies(code).makeAnimal(randomAge, field, location, sex);
+        }
+        reused++;
+        animal.reuse(randomAge, field, location, sex);
+        return animal;
+    }
+
+    /**
+     * Make a plant, out of a dead one of the same species if there is one.
+     * @param field The field to put it in.
+     * @param code The species code of the plant.
+     * @param location A free location to put it at.
+     * @return The new plant.
+     */
+    public Plant makePlant(Field field, int code, Location location)
+    {
+        Plant plant = (Plant) take(code);
+        if(plant == null) {
+            made++;
+            return field.getSpecies(code).makePlant(field, location);
+        }
+        reused++;
+        plant.reuse(field, location);
+        return plant;
+    }
+
+    /**
+     * Keep a dead animal for reuse.
+     * @param animal The animal, dead and no longer referred to.
+     */
+    public void release(Animal animal)
+    {
+        put(animal.getSpecies(), animal);
+    }
+
+    /**
+     * Keep a dead plant for reuse.
+     * @param plant The plant, dead and no longer referred to.
+     */
+    public void release(Plant plant)
+    {
+        put(plant.getSpecies(), plant);
+    }
+
+    /**
+     * Drop every dead object kept, e.g. when the simulation starts again.
+     */
+    public void clear()
+    {
+        for(int code = 0; code < free.length; code++) {
+            free[code] = null;
+            sizes[code] = 0;
+        }
+    }
+
+    /**
+     * @return How many animals and plants were made out of dead ones.
+     */
+    public long getReused()
+    {
+        return reused;
+    }
+
+    /**
+     * @return How many animals and plants were made afresh.
+     */
+    public long getMade()
+    {
+        return made;
+    }
+
+    /**
+     * Take a dead object of a species.
+     * @param code The species code.
+     * @return The object, or null if none is kept.
+     */
+    private Object take(int code)
+    {
+        if(code >= sizes.length || sizes[code] == 0) {
+            return null;
+        }
+        int size = --sizes[code];
+        Object entity = free[code][size];
+        free[code][size] = null;
+        return entity;
+    }
+
+    /**
+     * Keep a dead object of a species, unless enough are kept already.
+     * @param code The species code.
+     * @param entity The object.
+     */
+    private void put(int code, Object entity)
+    {
+        if(code >= sizes.length) {
+            // A species added since the pool was made.
+            free = Arrays.copyOf(free, Species.count());
+            sizes = Arrays.copyOf(sizes, Species.count());
+        }
+        int size = sizes[code];
+        if(size == LIMIT) {
+            return;
+        }
+        Object[] kept = free[code];
+        if(kept == null) {
+            kept = free[code] = new Object[INITIAL_CAPACITY];
+        }
+        else if(size == kept.length) {
+            kept = free[code] = Arrays.copyOf(kept, size * 2);
+        }
+        kept[size] = entity;
+        sizes[code] = size + 1;
+    }
+}
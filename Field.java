@@ -1,25 +1,85 @@
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Represent a rectangular grid of field positions.
  * Each position is able to store a single animal.
  * 
+ * Cells are kept in flat arrays, packed as row * width + col: a species
+ * code per cell and an id per cell. Objects placed in the field get an id
+ * in a registry of objects, so getObjectAt still finds them. Every tile
+ * has a registry of its own for the objects in it, and an object that
+ * moves to another tile gets an id there, so that tiles worked on by
+ * different threads (see TiledEngine) never share one. Entities kept
+ * outside the field, such as the animals of an AnimalStore, are placed by
+ * species and id alone, without any object; getObjectAt returns their
+ * Species object instead.
+ * 
  * @author Andrey and Shehan
  * @version (1, 19.02.2019)
  */
 public class Field
 {
-    // A random number generator for providing random locations.
-    private static final Random rand = Randomizer.getRandom();
+    // Row and column offsets of the eight cells around a location.
+    private static final int[] ROW_OFFSETS = { -1, -1, -1, 0, 0, 1, 1, 1 };
+    private static final int[] COL_OFFSETS = { -1, 0, 1, -1, 1, -1, 0, 1 };
+    // The number of orders the eight adjacent cells can be visited in (8!).
+    private static final int ORDERINGS = 40320;
+    // The field is cut into square tiles of 1 << TILE_SHIFT cells a side.
+    // A tile is exactly one word of the free cell set wide.
+    public static final int TILE_SHIFT = 6;
+    // The ids of a tile's registry are the tile times 1 << ID_SHIFT plus
+    // one plus a slot; a tile has a slot for each of its cells at most.
+    private static final int ID_SHIFT = 2 * TILE_SHIFT;
+    // Room for objects in a tile's registry when it is first used.
+    private static final int INITIAL_OBJECTS = 64;
     
     // The depth and width of the field.
     private int depth, width;
-    // Storage for the animals.
-    private Object[][] field;
+    // The species code of what is in every cell.
+    private byte[] kinds;
+    // The id of what is in every cell: an id in the registry for an
+    // object, the complement (~id) of the id of an entity kept outside
+    // the field, or 0 for an empty cell.
+    private int[] ids;
+    // The registry of objects in each tile, indexed by tile and slot, or
+    // null for a tile that never had any.
+    private Object[][] objects;
+    // For each tile, the slots below its nextSlot that are free to be used again.
+    private int[][] freeSlots;
+    private int[] freeSlotCounts;
+    // For each tile, the lowest slot that has never been used.
+    private int[] nextSlots;
+    // Where the males of every species are, for finding partners.
+    private MateIndex mates;
+    // Counts births and deaths while the simulation is measured, or null.
+    private StepMetrics metrics;
+    // Dead animals and plants kept for new ones to reuse, or null.
+    private EntityPool pool;
+    // This field's own copy of every species, indexed by code, so that a
+    // simulation can change its species without changing anyone else's.
+    private Species[] species;
+    // How many cells hold each species, indexed by species code.
+    // The NONE entry counts the empty cells.
+    private int[] counts;
+    // The free cells, one bit per cell. Every row starts a new word.
+    private long[] freeCells;
+    // The number of words used for each row of freeCells.
+    private int wordsPerRow;
+    // The cells that anything was put in, taken from or moved out of since
+    // clearChanges, laid out like freeCells.
+    private long[] changed;
+    // The number of free cells in each tile, row by row.
+    private int[] tileFree;
+    // While tiles are worked on by several threads, count changes go
+    // into one set of counts per tile instead of into counts.
+    private boolean concurrent;
+    private int[] tileCounts;
 
     /**
      * Represent a field of the given dimensions.
@@ -30,7 +90,21 @@ public class Field
     {
         this.depth = depth;
         this.width = width;
-        field = new Object[depth][width];
+        kinds = new byte[depth * width];
+        ids = new int[depth * width];
+        mates = new MateIndex(depth, width);
+        species = Species.copyAll();
+        counts = new int[species.length];
+        wordsPerRow = ((width - 1) >> 6) + 1;
+        freeCells = new long[depth * wordsPerRow];
+        changed = new long[depth * wordsPerRow];
+        tileFree = new int[(((depth - 1) >> TILE_SHIFT) + 1) * wordsPerRow];
+        tileCounts = new int[tileFree.length * counts.length];
+        objects = new Object[tileFree.length][];
+        freeSlots = new int[tileFree.length][];
+        freeSlotCounts = new int[tileFree.length];
+        nextSlots = new int[tileFree.length];
+        clearCounts();
     }
     
     /**
@@ -38,9 +112,34 @@ public class Field
      */
     public void clear()
     {
+        Arrays.fill(kinds, (byte) Species.NONE);
+        Arrays.fill(ids, 0);
+        for(Object[] registry : objects) {
+            if(registry != null) {
+                Arrays.fill(registry, null);
+            }
+        }
+        Arrays.fill(freeSlotCounts, 0);
+        Arrays.fill(nextSlots, 0);
+        mates.clear();
+        clearCounts();
+        Arrays.fill(changed, -1L);
+    }
+    
+    /**
+     * Reset the counts and the free cell set for an empty field.
+     */
+    private void clearCounts()
+    {
+        Arrays.fill(counts, 0);
+        counts[Species.NONE] = depth * width;
+        Arrays.fill(tileFree, 0);
         for(int row = 0; row < depth; row++) {
-            for(int col = 0; col < width; col++) {
-                field[row][col] = null;
+            for(int word = 0; word < wordsPerRow; word++) {
+                // The last word of a row only has bits for cells that exist.
+                int cells = Math.min(width - (word << 6), 64);
+                freeCells[row * wordsPerRow + word] = cells == 64 ? -1L : (1L << cells) - 1;
+                tileFree[(row >> TILE_SHIFT) * wordsPerRow + word] += cells;
             }
         }
     }
@@ -69,7 +168,31 @@ public class Field
      */
     public void clear(Location location)
     {
-        field[location.getRow()][location.getCol()] = null;
+        clear(location.getRow(), location.getCol());
+    }
+    
+    /**
+     * Clear the given location.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     */
+    public void clear(int row, int col)
+    {
+        int cell = row * width + col;
+        if(ids[cell] != 0) {
+            if(metrics != null) {
+                metrics.died(kinds[cell]);
+            }
+            count(row, col, kinds[cell], -1);
+            count(row, col, Species.NONE, 1);
+            setFree(row, col, true);
+            if(ids[cell] > 0) {
+                release(ids[cell]);
+            }
+            kinds[cell] = (byte) Species.NONE;
+            ids[cell] = 0;
+            markChanged(row, col);
+        }
     }
     
     /**
@@ -82,7 +205,333 @@ public class Field
      */
     public void place(Object animal, int row, int col)
     {
-        place(animal, new Location(row, col));
+        if(animal == null) {
+            clear(row, col);
+            return;
+        }
+        int species = Species.of(animal);
+        fill(row, col, species, register(animal, row, col));
+        if(metrics != null) {
+            metrics.born(species);
+        }
+    }
+    
+    /**
+     * Place an entity that is kept outside the field, such as an animal
+     * of an AnimalStore, by its species and id alone.
+     * If there is already something at the location it will be lost.
+     * @param species The species code of the entity.
+     * @param id The entity's id, which must not be negative.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     */
+    public void placeEntity(int species, int id, int row, int col)
+    {
+        fill(row, col, species, ~id);
+        if(metrics != null) {
+            metrics.born(species);
+        }
+    }
+    
+    /**
+     * Give the entity kept outside the field at the given location
+     * another id, e.g. after its keeper has moved it to another slot.
+     * @param id The entity's new id.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     */
+    public void renumberEntity(int id, int row, int col)
+    {
+        ids[row * width + col] = ~id;
+    }
+    
+    /**
+     * Move whatever is at one location to another one, keeping its id.
+     * If there is already something at the new location it will be lost.
+     * @param fromRow Row coordinate of the location to move from.
+     * @param fromCol Column coordinate of the location to move from.
+     * @param toRow Row coordinate of the location to move to.
+     * @param toCol Column coordinate of the location to move to.
+     */
+    public void move(int fromRow, int fromCol, int toRow, int toCol)
+    {
+        int from = fromRow * width + fromCol;
+        int species = kinds[from];
+        int id = ids[from];
+        int tile = tileOf(toRow, toCol);
+        if(id > 0 && (id - 1) >> ID_SHIFT != tile) {
+            // Objects are kept by the tile they are in.
+            Object object = lookup(id);
+            release(id);
+            id = register(object, toRow, toCol);
+        }
+        kinds[from] = (byte) Species.NONE;
+        ids[from] = 0;
+        count(fromRow, fromCol, species, -1);
+        count(fromRow, fromCol, Species.NONE, 1);
+        setFree(fromRow, fromCol, true);
+        markChanged(fromRow, fromCol);
+        fill(toRow, toCol, species, id);
+    }
+    
+    /**
+     * Put a species and id in a cell, updating the counts and the free
+     * cell set, and releasing the id of whatever was there.
+     * @param row Row coordinate of the cell.
+     * @param col Column coordinate of the cell.
+     * @param species The species code to put there.
+     * @param id The id to put there.
+     */
+    private void fill(int row, int col, int species, int id)
+    {
+        int cell = row * width + col;
+        int previous = ids[cell];
+        if(previous == 0) {
+            setFree(row, col, false);
+        }
+        else if(previous > 0) {
+            release(previous);
+        }
+        count(row, col, kinds[cell], -1);
+        count(row, col, species, 1);
+        kinds[cell] = (byte) species;
+        ids[cell] = id;
+        markChanged(row, col);
+    }
+    
+    /**
+     * Record that a cell has changed. A word of the change set covers
+     * cells of a single tile, so tiles worked on in parallel do not share words.
+     * @param row Row coordinate of the cell.
+     * @param col Column coordinate of the cell.
+     */
+    private void markChanged(int row, int col)
+    {
+        changed[row * wordsPerRow + (col >> 6)] |= 1L << col;
+    }
+    
+    /**
+     * Tell whether anything has been put in, taken from or moved out of
+     * a cell since clearChanges was last called. Emptying the whole field
+     * counts as changing every cell. Moves of an entity to another id
+     * (see renumberEntity) are not changes.
+     * @param row Row coordinate of the cell.
+     * @param col Column coordinate of the cell.
+     * @return true if the cell has changed.
+     */
+    public boolean hasChanged(int row, int col)
+    {
+        return (changed[row * wordsPerRow + (col >> 6)] & (1L << col)) != 0;
+    }
+    
+    /**
+     * Forget the changes made so far, so that hasChanged only tells about
+     * the changes made from now on, e.g. since the last checkpoint.
+     */
+    public void clearChanges()
+    {
+        Arrays.fill(changed, 0);
+    }
+    
+    /**
+     * Give an object an id in the registry of the tile it is put in.
+     * Only the thread working on a tile, or on one next to it, ever
+     * changes its registry, so no lock is needed, and ids are handed out
+     * in the same order however many threads there are.
+     * @param object The object.
+     * @param row Row coordinate of the cell it is put in.
+     * @param col Column coordinate of the cell it is put in.
+     * @return Its id, which is always positive.
+     */
+    private int register(Object object, int row, int col)
+    {
+        int tile = tileOf(row, col);
+        int slot;
+        if(freeSlotCounts[tile] > 0) {
+            slot = freeSlots[tile][--freeSlotCounts[tile]];
+        }
+        else {
+            slot = nextSlots[tile]++;
+            Object[] registry = objects[tile];
+            if(registry == null) {
+                objects[tile] = new Object[INITIAL_OBJECTS];
+                freeSlots[tile] = new int[INITIAL_OBJECTS];
+            }
+            else if(slot == registry.length) {
+                objects[tile] = Arrays.copyOf(registry, slot * 2);
+                freeSlots[tile] = Arrays.copyOf(freeSlots[tile], slot * 2);
+            }
+        }
+        objects[tile][slot] = object;
+        return (tile << ID_SHIFT) + slot + 1;
+    }
+    
+    /**
+     * Free an id of a registry for reuse.
+     * @param id The id of an object that is no longer in the field.
+     */
+    private void release(int id)
+    {
+        int tile = (id - 1) >> ID_SHIFT;
+        int slot = (id - 1) & ((1 << ID_SHIFT) - 1);
+        objects[tile][slot] = null;
+        freeSlots[tile][freeSlotCounts[tile]++] = slot;
+    }
+    
+    /**
+     * @param id The id of an object in the field.
+     * @return The object.
+     */
+    private Object lookup(int id)
+    {
+        return objects[(id - 1) >> ID_SHIFT][(id - 1) & ((1 << ID_SHIFT) - 1)];
+    }
+    
+    /**
+     * Change the count of a species after a cell has changed.
+     * @param row Row coordinate of the cell that changed.
+     * @param col Column coordinate of the cell that changed.
+     * @param species The species whose count changes.
+     * @param change How much the count changes by.
+     */
+    private void count(int row, int col, int species, int change)
+    {
+        if(concurrent) {
+            tileCounts[tileOf(row, col) * counts.length + species] += change;
+        }
+        else {
+            counts[species] += change;
+        }
+    }
+    
+    /**
+     * Switch concurrent updates on or off.
+     * While they are on, tiles that are at least two tiles apart may be
+     * changed from different threads at the same time; see TiledEngine.
+     * Everything the field keeps is then either per cell, per bucket of
+     * the mate index or per tile, except the species counts, which are
+     * kept per tile until updates are switched off again.
+     * @param concurrent true before tiles are worked on in parallel,
+     *                   false once they are all done.
+     */
+    public void setConcurrent(boolean concurrent)
+    {
+        if(this.concurrent && !concurrent) {
+            // Add up the changes made in each tile.
+            for(int tile = 0; tile < tileFree.length; tile++) {
+                for(int species = 0; species < counts.length; species++) {
+                    counts[species] += tileCounts[tile * counts.length + species];
+                }
+            }
+            Arrays.fill(tileCounts, 0);
+        }
+        this.concurrent = concurrent;
+    }
+    
+    /**
+     * @param row Row coordinate of a cell.
+     * @param col Column coordinate of a cell.
+     * @return The tile the cell lies in.
+     */
+    public int tileOf(int row, int col)
+    {
+        return (row >> TILE_SHIFT) * wordsPerRow + (col >> TILE_SHIFT);
+    }
+    
+    /**
+     * @return The number of tiles down the field.
+     */
+    public int getTileRows()
+    {
+        return tileFree.length / wordsPerRow;
+    }
+    
+    /**
+     * @return The number of tiles across the field.
+     */
+    public int getTileCols()
+    {
+        return wordsPerRow;
+    }
+    
+    /**
+     * Mark a cell as free or taken in the free cell set.
+     * @param row Row coordinate of the cell.
+     * @param col Column coordinate of the cell.
+     * @param free true if the cell has just become free.
+     */
+    private void setFree(int row, int col, boolean free)
+    {
+        int word = col >> 6;
+        int tile = tileOf(row, col);
+        if(free) {
+            freeCells[row * wordsPerRow + word] |= 1L << col;
+            tileFree[tile]++;
+        }
+        else {
+            freeCells[row * wordsPerRow + word] &= ~(1L << col);
+            tileFree[tile]--;
+        }
+    }
+    
+    /**
+     * Visit a random sample of the free cells, taking every free cell
+     * independently with the given probability, as if a coin were
+     * tossed for each of them.
+     * Instead of tossing a coin per cell, the number of free cells to
+     * pass over before the next one taken is drawn from a geometric
+     * distribution, and whole tiles and words are passed over by their
+     * free counts. The work done therefore follows the number of cells
+     * taken rather than the size of the field. Since this draws one
+     * number per cell taken instead of one per free cell, the cells taken
+     * are not those of the original version for the same seed.
+     * The visitor may fill the cell it is shown; its answer is ignored.
+     * @param probability The chance of each free cell being taken.
+     * @param visitor The visitor to show every cell taken.
+     */
+    public void sampleFreeCells(double probability, CellVisitor visitor)
+    {
+        if(probability <= 0) {
+            return;
+        }
+        double logMiss = Math.log(1 - probability);
+        long skip = nextSkip(logMiss);
+        for(int tile = 0; tile < tileFree.length; tile++) {
+            if(skip >= tileFree[tile]) {
+                skip -= tileFree[tile];
+                continue;
+            }
+            int word = tile % wordsPerRow;
+            int firstRow = (tile / wordsPerRow) << TILE_SHIFT;
+            int lastRow = Math.min(firstRow + (1 << TILE_SHIFT), depth);
+            for(int row = firstRow; row < lastRow; row++) {
+                long bits = freeCells[row * wordsPerRow + word];
+                int free = Long.bitCount(bits);
+                while(skip < free) {
+                    // Drop the free cells passed over, then take the next.
+                    for(long i = 0; i < skip; i++) {
+                        bits &= bits - 1;
+                    }
+                    int bit = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    free = Long.bitCount(bits);
+                    visitor.visit(row, (word << 6) + bit);
+                    skip = nextSkip(logMiss);
+                }
+                skip -= free;
+            }
+        }
+    }
+    
+    /**
+     * Draw how many free cells to pass over before the next one is taken.
+     * @param logMiss The log of the chance that a cell is not taken.
+     * @return A geometrically distributed number of cells.
+     */
+    private static long nextSkip(double logMiss)
+    {
+        // 1 - nextDouble() lies in (0, 1], so the log is never infinite.
+        return (long) (Math.log(1 - Randomizer.current().nextDouble()) / logMiss);
     }
     
     /**
@@ -94,7 +543,7 @@ public class Field
      */
     public void place(Object animal, Location location)
     {
-        field[location.getRow()][location.getCol()] = animal;
+        place(animal, location.getRow(), location.getCol());
     }
     
     /**
@@ -115,7 +564,53 @@ public class Field
      */
     public Object getObjectAt(int row, int col)
     {
-        return field[row][col];
+        int id = ids[row * width + col];
+        if(id > 0) {
+            return lookup(id);
+        }
+        else if(id < 0) {
+            return species[kinds[row * width + col]];
+        }
+        else {
+            return null;
+        }
+    }
+    
+    /**
+     * Return the species of what is at the given location.
+     * This is a plain array lookup, so it is quicker than looking at
+     * the object there.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The species code, or Species.NONE for an empty location.
+     */
+    public int getSpeciesAt(int row, int col)
+    {
+        return kinds[row * width + col];
+    }
+    
+    /**
+     * Copy the species of every cell, e.g. to show the field while the
+     * simulation goes on.
+     * @param codes Where to copy the species codes to, row by row as
+     *              row * width + col; it must have a place for every cell.
+     */
+    public void copySpeciesCodes(byte[] codes)
+    {
+        System.arraycopy(kinds, 0, codes, 0, kinds.length);
+    }
+    
+    /**
+     * Return the id of an entity kept outside the field at the given location.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The id given to placeEntity, or -1 if the location is empty
+     *         or holds an object.
+     */
+    public int getEntityAt(int row, int col)
+    {
+        int id = ids[row * width + col];
+        return id < 0 ? ~id : -1;
     }
     
     /**
@@ -128,8 +623,8 @@ public class Field
      */
     public Location randomAdjacentLocation(Location location)
     {
-        List<Location> adjacent = adjacentLocations(location);
-        return adjacent.get(0);
+        int cell = randomAdjacentCell(location.getRow(), location.getCol());
+        return new Location(rowOf(cell), colOf(cell));
     }
     
     /**
@@ -159,10 +654,9 @@ public class Field
      */
     public Location freeAdjacentLocation(Location location)
     {
-        // The available free ones.
-        List<Location> free = getFreeAdjacentLocations(location);
-        if(free.size() > 0) {
-            return free.get(0);
+        int cell = freeAdjacentCell(location.getRow(), location.getCol());
+        if(cell >= 0) {
+            return new Location(rowOf(cell), colOf(cell));
         }
         else {
             return null;
@@ -182,28 +676,141 @@ public class Field
         // The list of locations to be returned.
         List<Location> locations = new LinkedList<>();
         if(location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            for(int roffset = -1; roffset <= 1; roffset++) {
-                int nextRow = row + roffset;
-                if(nextRow >= 0 && nextRow < depth) {
-                    for(int coffset = -1; coffset <= 1; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if(nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
-                    }
-                }
+            int[] cells = new int[8];
+            int count = adjacentCells(location.getRow(), location.getCol(), cells);
+            for(int i = 0; i < count; i++) {
+                locations.add(new Location(rowOf(cells[i]), colOf(cells[i])));
             }
-            
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
         }
         return locations;
     }
     
+    /**
+     * Fill the given buffer with the cells adjacent to the given one,
+     * in a random order. The cell itself is not included and all
+     * cells lie within the grid. Cells are packed as
+     * row * width + col; see rowOf and colOf.
+     * Nothing is allocated, so the buffer can be reused between calls.
+     * The order is drawn with other numbers than the shuffled lists of
+     * the original version used, so runs differ from its runs.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param cells A buffer of at least eight elements to fill.
+     * @return The number of cells written to the buffer.
+     */
+    public int adjacentCells(int row, int col, int[] cells)
+    {
+        RandomGenerator rand = Randomizer.current();
+        int count = 0;
+        for(int dir = 0; dir < 8; dir++) {
+            int nextRow = row + ROW_OFFSETS[dir];
+            int nextCol = col + COL_OFFSETS[dir];
+            if(nextRow >= 0 && nextRow < depth && nextCol >= 0 && nextCol < width) {
+                // Shuffle while filling: put the new cell at a random
+                // position and move whatever was there to the end.
+                int swap = rand.nextInt(count + 1);
+                cells[count] = cells[swap];
+                cells[swap] = nextRow * width + nextCol;
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Visit the cells adjacent to the given one in a random order,
+     * stopping at the first one the visitor accepts.
+     * Nothing is allocated.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param visitor The visitor to show each adjacent cell to.
+     * @return The packed cell the visitor stopped at, or -1 if it never did.
+     */
+    public int visitAdjacent(int row, int col, CellVisitor visitor)
+    {
+        return findAdjacent(row, col, visitor, false);
+    }
+    
+    /**
+     * Choose a random free cell adjacent to the given one.
+     * Nothing is allocated.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return A packed free cell, or -1 if all adjacent cells are taken.
+     */
+    public int freeAdjacentCell(int row, int col)
+    {
+        return findAdjacent(row, col, null, true);
+    }
+    
+    /**
+     * Choose a random cell adjacent to the given one.
+     * Nothing is allocated.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return A packed cell within the grid.
+     */
+    public int randomAdjacentCell(int row, int col)
+    {
+        return findAdjacent(row, col, null, false);
+    }
+    
+    /**
+     * Walk the adjacent cells in a random order and return the first
+     * one that is acceptable.
+     * The order is drawn as a single number below 8! and decoded one
+     * direction at a time, so no list has to be built and shuffled.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param visitor A visitor that must accept the cell, or null.
+     * @param freeOnly true to accept only empty cells.
+     * @return The first acceptable packed cell, or -1 if there is none.
+     */
+    private int findAdjacent(int row, int col, CellVisitor visitor, boolean freeOnly)
+    {
+        int order = Randomizer.current().nextInt(ORDERINGS);
+        // One bit for each direction that has not been tried yet.
+        int untried = 0xFF;
+        for(int left = 8; left > 0; left--) {
+            // Take the n-th untried direction.
+            int n = order % left;
+            order /= left;
+            int bits = untried;
+            for(int i = 0; i < n; i++) {
+                bits &= bits - 1;
+            }
+            int dir = Integer.numberOfTrailingZeros(bits);
+            untried &= ~(1 << dir);
+            
+            int nextRow = row + ROW_OFFSETS[dir];
+            int nextCol = col + COL_OFFSETS[dir];
+            if(nextRow >= 0 && nextRow < depth && nextCol >= 0 && nextCol < width
+                    && (!freeOnly || ids[nextRow * width + nextCol] == 0)
+                    && (visitor == null || visitor.visit(nextRow, nextCol))) {
+                return nextRow * width + nextCol;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * @param cell A packed cell, as returned by the adjacency methods.
+     * @return The row of the cell.
+     */
+    public int rowOf(int cell)
+    {
+        return cell / width;
+    }
+    
+    /**
+     * @param cell A packed cell, as returned by the adjacency methods.
+     * @return The column of the cell.
+     */
+    public int colOf(int cell)
+    {
+        return cell % width;
+    }
+    
     /**
      * Get a shuffled list of the filled locations in the specified rea.
      * @param location Get locations adjacent to this.
@@ -234,7 +841,7 @@ public class Field
     {
         assert location != null : "Null location passed to adjacentLocations";
         // The list of locations to be returned.
-        List<Location> locations = new LinkedList<>();
+        List<Location> locations = new ArrayList<>();
         if(location != null) {
             int row = location.getRow();
             int col = location.getCol();
@@ -253,11 +860,133 @@ public class Field
             
             // Shuffle the list. Several other methods rely on the list
             // being in a random order.
-            Collections.shuffle(locations, rand);
+            RandomGenerator rand = Randomizer.current();
+            for(int i = locations.size() - 1; i > 0; i--) {
+                Collections.swap(locations, i, rand.nextInt(i + 1));
+            }
         }
         return locations;
     }
 
+    /**
+     * Return how many cells hold the given species. The counts are kept
+     * up to date as things are placed and cleared, so this is cheap.
+     * @param species A species code, or Species.NONE for empty cells.
+     * @return The number of cells holding that species.
+     */
+    public int getCount(int species)
+    {
+        return counts[species];
+    }
+    
+    /**
+     * Return the number of species that have at least one member
+     * in the field.
+     * @return The number of species present.
+     */
+    public int countSpeciesPresent()
+    {
+        int present = 0;
+        for(int species = Species.NONE + 1; species < counts.length; species++) {
+            if(counts[species] > 0) {
+                present++;
+            }
+        }
+        return present;
+    }
+    
+    /**
+     * Return the index of where the males of every species are.
+     * Animals keep it up to date as they move and die.
+     * @return The mate index of this field.
+     */
+    public MateIndex getMateIndex()
+    {
+        return mates;
+    }
+    
+    /**
+     * Count births, deaths and kills in the field from now on.
+     * @param metrics Where to count them, or null to stop counting.
+     */
+    void setMetrics(StepMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * @return Where births, deaths and kills are counted, or null if
+     *         they are not.
+     */
+    StepMetrics getMetrics()
+    {
+        return metrics;
+    }
+    
+    /**
+     * Make new animals and plants out of dead ones from now on.
+     * @param pool Where the dead ones are kept, or null to always make
+     *             new objects.
+     */
+    void setPool(EntityPool pool)
+    {
+        this.pool = pool;
+    }
+    
+    /**
+     * @return Where dead animals and plants are kept for reuse, or null
+     *         if they are not.
+     */
+    EntityPool getPool()
+    {
+        return pool;
+    }
+    
+    /**
+     * Make an animal in this field, out of a dead one of the same species
+     * if the pool has one. While updates are concurrent new objects are
+     * always made, since the pool is not shared between threads.
+     * @param code The species code of the animal.
+     * @param randomAge true for a random age, false for a newborn.
+     * @param location A free location to put it at.
+     * @param sex The sex of the animal, either male or female.
+     * @return The new animal.
+     */
+    public Animal makeAnimal(int code, boolean randomAge, Location location, String sex)
+    {
+        if(pool != null && !concurrent) {
+            return pool.makeAnimal(this, code, randomAge, location, sex);
+        }
+        return species[code].makeAnimal(randomAge, this, location, sex);
+    }
+    
+    /**
+     * Make a plant in this field, out of a dead one of the same species
+     * if the pool has one; see makeAnimal.
+     * @param code The species code of the plant.
+     * @param location A free location to put it at.
+     * @return The new plant.
+     */
+    public Plant makePlant(int code, Location location)
+    {
+        if(pool != null && !concurrent) {
+            return pool.makePlant(this, code, location);
+        }
+        return species[code].makePlant(this, location);
+    }
+    
+    /**
+     * Return what a species is like in this field. Every field starts
+     * with a copy of the species as they were when it was made, which
+     * its simulation may change (see Simulator.configure).
+     * @param code A species code.
+     * @return This field's copy of the species.
+     */
+    public Species getSpecies(int code)
+    {
+        return species[code];
+    }
+
     /**
      * Return the depth of the field.
      * @return The depth of the field.
@@ -0,0 +1,251 @@
+import java.util.Arrays;
+
+/**
+ * A mip-map pyramid over the species of the cells of a field, for
+ * showing fields far larger than the screen. Every level cuts the field
+ * into square blocks, twice as wide as those of the level below, the
+ * finest being 4 cells wide. For every block it keeps the species most
+ * of its cells hold (NONE if it is empty) and how many of its cells are
+ * occupied at all.
+ *
+ * The pyramid is updated from a copy of the species of every cell. Only
+ * the blocks over cells that changed are worked out again, level by
+ * level, each from the four blocks below it, so a block's species is the
+ * one that wins the votes of its four parts rather than an exact count.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class FieldPyramid
+{
+    // The width of the blocks of the finest level, as a power of two.
+    private static final int BASE_SHIFT = 2;
+
+    // The depth and width of the field.
+    private int depth, width;
+    // The species of every cell as of the last update, as row * width + col.
+    private byte[] cells;
+    // The number of blocks down and across each level.
+    private int[] levelDepth, levelWidth;
+    // The species most of each block of each level holds, by level and
+    // then block as row * levelWidth + col.
+    private byte[][] majority;
+    // How many cells of each block hold its species, as far as the votes
+    // of its parts go, and how many hold anything at all.
+    private int[][] support;
+    private int[][] occupied;
+    // The blocks of each level to work out again, one bit per block.
+    private long[][] dirty;
+    // Votes for each species while working out a block.
+    private int[] votes;
+
+    /**
+     * Create a pyramid over an empty field.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public FieldPyramid(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        cells = new byte[depth * width];
+        int levels = 1;
+        while(((depth - 1) >> (BASE_SHIFT + levels - 1)) > 0
+              || ((width - 1) >> (BASE_SHIFT + levels - 1)) > 0) {
+            levels++;
+        }
+        levelDepth = new int[levels];
+        levelWidth = new int[levels];
+        majority = new byte[levels][];
+        support = new int[levels][];
+        occupied = new int[levels][];
+        dirty = new long[levels][];
+        for(int level = 0; level < levels; level++) {
+            int shift = getShift(level);
+            levelDepth[level] = ((depth - 1) >> shift) + 1;
+            levelWidth[level] = ((width - 1) >> shift) + 1;
+            int blocks = levelDepth[level] * levelWidth[level];
+            majority[level] = new byte[blocks];
+            support[level] = new int[blocks];
+            occupied[level] = new int[blocks];
+            dirty[level] = new long[((blocks - 1) >> 6) + 1];
+        }
+        votes = new int[Species.count()];
+    }
+
+    /**
+     * Bring the pyramid up to date with the field.
+     * @param codes The species of every cell, as row * width + col.
+     * @return true if any cell changed since the last update.
+     */
+    public boolean update(byte[] codes)
+    {
+        boolean changed = false;
+        int cell = 0;
+        int offset;
+        // Skip quickly over the runs of cells that are unchanged.
+        while((offset = Arrays.mismatch(codes, cell, cells.length, cells, cell, cells.length)) >= 0) {
+            cell += offset;
+            cells[cell] = codes[cell];
+            int block = ((cell / width) >> BASE_SHIFT) * levelWidth[0] + ((cell % width) >> BASE_SHIFT);
+            dirty[0][block >> 6] |= 1L << block;
+            changed = true;
+            cell++;
+        }
+        if(changed) {
+            rebuild();
+        }
+        return changed;
+    }
+
+    /**
+     * Work out the dirty blocks again, from the finest level up.
+     */
+    private void rebuild()
+    {
+        for(int level = 0; level < dirty.length; level++) {
+            long[] bits = dirty[level];
+            for(int word = 0; word < bits.length; word++) {
+                long set = bits[word];
+                bits[word] = 0;
+                while(set != 0) {
+                    int block = (word << 6) + Long.numberOfTrailingZeros(set);
+                    set &= set - 1;
+                    int row = block / levelWidth[level];
+                    int col = block % levelWidth[level];
+                    if(level == 0) {
+                        countCells(block, row, col);
+                    }
+                    else {
+                        countParts(level, block, row, col);
+                    }
+                    if(level + 1 < dirty.length) {
+                        int parent = (row >> 1) * levelWidth[level + 1] + (col >> 1);
+                        dirty[level + 1][parent >> 6] |= 1L << parent;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Work out a block of the finest level from its cells.
+     */
+    private void countCells(int block, int row, int col)
+    {
+        int top = row << BASE_SHIFT;
+        int left = col << BASE_SHIFT;
+        int bottom = Math.min(top + (1 << BASE_SHIFT), depth);
+        int right = Math.min(left + (1 << BASE_SHIFT), width);
+        for(int r = top; r < bottom; r++) {
+            for(int c = left; c < right; c++) {
+                votes[cells[r * width + c]]++;
+            }
+        }
+        settle(0, block, (bottom - top) * (right - left) - votes[Species.NONE]);
+    }
+
+    /**
+     * Work out a block from the four blocks below it.
+     */
+    private void countParts(int level, int block, int row, int col)
+    {
+        int below = level - 1;
+        int total = 0;
+        for(int r = row << 1; r < Math.min((row << 1) + 2, levelDepth[below]); r++) {
+            for(int c = col << 1; c < Math.min((col << 1) + 2, levelWidth[below]); c++) {
+                int part = r * levelWidth[below] + c;
+                votes[majority[below][part]] += support[below][part];
+                total += occupied[below][part];
+            }
+        }
+        settle(level, block, total);
+    }
+
+    /**
+     * Give a block the species with the most votes, and clear the votes.
+     */
+    private void settle(int level, int block, int total)
+    {
+        int best = Species.NONE;
+        for(int species = Species.NONE + 1; species < votes.length; species++) {
+            if(votes[species] > votes[best] || best == Species.NONE && votes[species] > 0) {
+                best = species;
+            }
+        }
+        majority[level][block] = (byte) best;
+        support[level][block] = best == Species.NONE ? 0 : votes[best];
+        occupied[level][block] = total;
+        Arrays.fill(votes, 0);
+    }
+
+    /**
+     * @return The number of levels.
+     */
+    public int getLevels()
+    {
+        return majority.length;
+    }
+
+    /**
+     * @param level A level.
+     * @return The width of the blocks of the level, as a power of two.
+     */
+    public int getShift(int level)
+    {
+        return BASE_SHIFT + level;
+    }
+
+    /**
+     * Choose the coarsest level whose blocks are no wider than the cells
+     * one pixel shows, so that drawing reads as little as it can.
+     * @param cellsPerPixel How many cells wide a pixel is.
+     * @return The level, or -1 to read single cells.
+     */
+    public int chooseLevel(double cellsPerPixel)
+    {
+        int level = -1;
+        while(level + 1 < getLevels() && (1 << getShift(level + 1)) <= cellsPerPixel) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * @param row The row of a cell.
+     * @param col The column of the cell.
+     * @return The species of the cell as of the last update.
+     */
+    public int getSpeciesAt(int row, int col)
+    {
+        return cells[row * width + col];
+    }
+
+    /**
+     * @param level A level.
+     * @param row The row of a cell.
+     * @param col The column of the cell.
+     * @return The species most of the block over the cell holds.
+     */
+    public int getMajority(int level, int row, int col)
+    {
+        int shift = getShift(level);
+        return majority[level][(row >> shift) * levelWidth[level] + (col >> shift)];
+    }
+
+    /**
+     * @param level A level.
+     * @param row The row of a cell.
+     * @param col The column of the cell.
+     * @return The share of the cells of the block over the cell that
+     *         are occupied, from 0 to 1.
+     */
+    public double getDensity(int level, int row, int col)
+    {
+        int shift = getShift(level);
+        int top = (row >> shift) << shift;
+        int left = (col >> shift) << shift;
+        int area = Math.min(1 << shift, depth - top) * Math.min(1 << shift, width - left);
+        return (double) occupied[level][(row >> shift) * levelWidth[level] + (col >> shift)] / area;
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.List;
+import java.util.random.RandomGenerator;
 
 /**
  * A simple model of grass.
@@ -21,21 +22,23 @@ public class Grass extends Plant
         REPRODUCTION_PROBABILITY = 0.2;
     }
     
+    /**
+     * @return The species code of grass.
+     */
+    public int getSpecies()
+    {
+        return Species.GRASS;
+    }
+    
     /**
      * gets all free locations around the grass and adds more in the adjacent locations
      * @param a list of all the new grass created
      */
     public void reproduce(List<Plant> newGrass)
     {
+        RandomGenerator rand = Randomizer.current();
         if(isAlive() && rand.nextDouble() <= REPRODUCTION_PROBABILITY){
-            Field field = getField();
-            List<Location> free = field.getFreeAdjacentLocations(getLocation());  
-            int greens = rand.nextInt(MAX_LITTER_SIZE) + 1;
-            for(int g = 0; g < greens && free.size() > 0; g++){
-                Location loc = free.remove(0);
-                Grass grass = new Grass(field, loc);
-                newGrass.add(grass);
-            }
+            spread(newGrass);
         }
     }
 }
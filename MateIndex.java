@@ -0,0 +1,157 @@
+import java.util.Arrays;
+
+/**
+ * An index of where the male animals of every species are in a field,
+ * so that a female can find a partner without looking at every cell
+ * around her.
+ * The field is cut into square buckets and each bucket keeps the males
+ * of each species that stand in it. Animals keep the index up to date
+ * when they move or die.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class MateIndex
+{
+    // The side of a bucket is 1 << BUCKET_SHIFT cells.
+    private static final int BUCKET_SHIFT = 3;
+    // Room for males in a bucket when it is first used.
+    private static final int INITIAL_CAPACITY = 4;
+
+    // The number of buckets down and across the field.
+    private int bucketRows, bucketCols;
+    // The males in every bucket, indexed by species and then bucket.
+    private Animal[][][] males;
+    // How many males each bucket holds, indexed like males.
+    private int[][] sizes;
+
+    /**
+     * Create an empty index for a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public MateIndex(int depth, int width)
+    {
+        bucketRows = ((depth - 1) >> BUCKET_SHIFT) + 1;
+        bucketCols = ((width - 1) >> BUCKET_SHIFT) + 1;
+        males = new Animal[Species.count()][bucketRows * bucketCols][];
+        sizes = new int[Species.count()][bucketRows * bucketCols];
+    }
+
+    /**
+     * Remove every animal from the index.
+     */
+    public void clear()
+    {
+        for(int species = 0; species < males.length; species++) {
+            Arrays.fill(males[species], null);
+            Arrays.fill(sizes[species], 0);
+        }
+    }
+
+    /**
+     * Add a male that has been placed at the given location.
+     * @param male The animal to add.
+     * @param row The row it stands in.
+     * @param col The column it stands in.
+     */
+    public void add(Animal male, int row, int col)
+    {
+        int species = male.getSpecies();
+        int bucket = bucketOf(row, col);
+        Animal[] inBucket = males[species][bucket];
+        int size = sizes[species][bucket];
+        if(inBucket == null) {
+            inBucket = new Animal[INITIAL_CAPACITY];
+            males[species][bucket] = inBucket;
+        }
+        else if(size == inBucket.length) {
+            inBucket = Arrays.copyOf(inBucket, size * 2);
+            males[species][bucket] = inBucket;
+        }
+        inBucket[size] = male;
+        male.setMateSlot(size);
+        sizes[species][bucket] = size + 1;
+    }
+
+    /**
+     * Remove a male from the location it was last added at.
+     * The last male of the bucket takes its slot.
+     * @param male The animal to remove.
+     * @param row The row it stands in.
+     * @param col The column it stands in.
+     */
+    public void remove(Animal male, int row, int col)
+    {
+        int species = male.getSpecies();
+        int bucket = bucketOf(row, col);
+        Animal[] inBucket = males[species][bucket];
+        int last = sizes[species][bucket] - 1;
+        int slot = male.getMateSlot();
+        Animal moved = inBucket[last];
+        inBucket[slot] = moved;
+        moved.setMateSlot(slot);
+        inBucket[last] = null;
+        sizes[species][bucket] = last;
+    }
+
+    /**
+     * Update the index for a male that has moved.
+     * Nothing changes unless it has moved into another bucket.
+     * @param male The animal that moved.
+     * @param oldRow The row it stood in.
+     * @param oldCol The column it stood in.
+     * @param newRow The row it stands in now.
+     * @param newCol The column it stands in now.
+     */
+    public void move(Animal male, int oldRow, int oldCol, int newRow, int newCol)
+    {
+        if(bucketOf(oldRow, oldCol) != bucketOf(newRow, newCol)) {
+            remove(male, oldRow, oldCol);
+            add(male, newRow, newCol);
+        }
+    }
+
+    /**
+     * Find a male of the given species within a square area.
+     * Only the buckets that overlap the area are looked at. No random
+     * numbers are drawn, where the original version shuffled the area
+     * first, so runs differ from its runs.
+     * @param species The species code to look for.
+     * @param row The row of the centre of the area.
+     * @param col The column of the centre of the area.
+     * @param radius How many cells the area reaches in each direction.
+     * @return A male within the area, or null if there is none.
+     */
+    public Animal findMale(int species, int row, int col, int radius)
+    {
+        Animal[][] speciesMales = males[species];
+        int[] speciesSizes = sizes[species];
+        int firstRow = Math.max(row - radius, 0) >> BUCKET_SHIFT;
+        int lastRow = Math.min((row + radius) >> BUCKET_SHIFT, bucketRows - 1);
+        int firstCol = Math.max(col - radius, 0) >> BUCKET_SHIFT;
+        int lastCol = Math.min((col + radius) >> BUCKET_SHIFT, bucketCols - 1);
+        for(int bucketRow = firstRow; bucketRow <= lastRow; bucketRow++) {
+            for(int bucketCol = firstCol; bucketCol <= lastCol; bucketCol++) {
+                int bucket = bucketRow * bucketCols + bucketCol;
+                Animal[] inBucket = speciesMales[bucket];
+                for(int i = speciesSizes[bucket] - 1; i >= 0; i--) {
+                    Animal male = inBucket[i];
+                    if(Math.abs(male.getRow() - row) <= radius
+                            && Math.abs(male.getCol() - col) <= radius) {
+                        return male;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The bucket that holds the given location.
+     */
+    private int bucketOf(int row, int col)
+    {
+        return (row >> BUCKET_SHIFT) * bucketCols + (col >> BUCKET_SHIFT);
+    }
+}
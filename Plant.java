@@ -1,5 +1,5 @@
 import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Class representing shared characeristics of plants.
@@ -13,10 +13,9 @@ public abstract class Plant
     private boolean alive;
     // Plants fied.
     private Field field;
-    // Plants location in the field.
-    private Location location;
-    // Get random object fo further use.
-    protected static final Random rand = Randomizer.getRandom();
+    // Plants location in the field; row is -1 when not placed.
+    private int row = -1;
+    private int col;
     // instance variables - replace the example below with your own
     protected int MAX_LITTER_SIZE;
     //Likelihood of a plant reproducing.
@@ -35,12 +34,60 @@ public abstract class Plant
         setLocation(location);
     }
     
+    /**
+     * Bring a dead plant back as a new one of the same species, so that
+     * EntityPool can use it again.
+     * 
+     * @param field The field to be in, the one the plant was in before.
+     * @param location The location within the field.
+     */
+    void reuse(Field field, Location location)
+    {
+        alive = true;
+        this.field = field;
+        setLocation(location);
+    }
+    
+    /**
+     * Return the species code of the plant.
+     * @return One of the codes in Species.
+     */
+    abstract public int getSpecies();
+    
     /**
      * Make this plant reproduce 
      * @param newPlants A list to receive newly born plants.
      */
     abstract public void reproduce(List<Plant> newPlants);
 
+    /**
+     * Put young plants on free cells next to this plant, without first
+     * deciding whether it reproduces at all; reproduce does that, and
+     * PlantScheduler decides it ahead of time.
+     * @param newPlants A list to receive newly born plants.
+     */
+    public void spread(List<Plant> newPlants)
+    {
+        RandomGenerator rand = Randomizer.current();
+        int young = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        for(int y = 0; y < young; y++){
+            int cell = field.freeAdjacentCell(row, col);
+            if(cell < 0) {
+                break;
+            }
+            Location loc = new Location(field.rowOf(cell), field.colOf(cell));
+            newPlants.add(field.makePlant(getSpecies(), loc));
+        }
+    }
+
+    /**
+     * @return The likelihood of the plant reproducing in a step.
+     */
+    public double getReproductionProbability()
+    {
+        return REPRODUCTION_PROBABILITY;
+    }
+
     /**
      * @return true if alive
      * false othervise
@@ -65,19 +112,38 @@ public abstract class Plant
     protected void setDead()
     {
         alive = false;
-        if(location != null) {
-            field.clear(location);
-            location = null;
+        if(row >= 0) {
+            field.clear(row, col);
+            row = -1;
             field = null;
         }
     }
     
     /**
-     * @return the current location of the plant.
+     * @return the current location of the plant, or null if it is not in the field.
      */
     protected Location getLocation()
     {
-        return location;
+        if(row < 0) {
+            return null;
+        }
+        return new Location(row, col);
+    }
+    
+    /**
+     * @return The row the plant is in.
+     */
+    protected int getRow()
+    {
+        return row;
+    }
+    
+    /**
+     * @return The column the plant is in.
+     */
+    protected int getCol()
+    {
+        return col;
     }
     
     /**
@@ -86,10 +152,11 @@ public abstract class Plant
      */
     protected void setLocation(Location newLocation)
     {
-        if(location != null) {
-            field.clear(location);
+        if(row >= 0) {
+            field.clear(row, col);
         }
-        location = newLocation;
-        field.place(this, newLocation);
+        row = newLocation.getRow();
+        col = newLocation.getCol();
+        field.place(this, row, col);
     }
 }
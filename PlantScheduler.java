@@ -0,0 +1,257 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Decides ahead of time in which step every plant reproduces next, so
+ * that a step only touches the plants that reproduce in it, instead of
+ * rolling for every plant in every step and doing nothing four times
+ * out of five.
+ *
+ * A plant that reproduces with probability p in every step it gets the
+ * chance reproduces next after a number of chances that is geometric:
+ * it is k with probability (1 - p)^(k - 1) * p. So the scheduler draws
+ * that number once, when the plant appears and each time it reproduces,
+ * and notes the step the plant is due at. Only growing steps count,
+ * those that are not dry, just as plants roll only in those. Since the
+ * geometric distribution has no memory, plants scheduled like this
+ * reproduce as often, and at the same times, as plants rolling in every
+ * step, and a plant can be scheduled afresh at any step without
+ * changing that.
+ *
+ * The plants are kept in a timing wheel: a ring of buckets, one for each
+ * growing step to come modulo the size of the ring. Plants never move,
+ * so a bucket is a set of cells, one bit per cell, and the plant and the
+ * step it is due at are kept by its cell. A step goes through the cells
+ * of its bucket in order, which keeps the field in the cache as well as
+ * going through the list of plants does. A bit is left behind when a
+ * plant dies or is scheduled afresh; it is dropped when its step comes
+ * and the cell no longer holds a living plant due then. A dead plant may
+ * have been reused for a plant in another cell (see EntityPool), so the
+ * plant kept by a cell must also still be in it. Plants due a
+ * whole turn or more later keep their bit for a later turn.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class PlantScheduler
+{
+    // The number of buckets of the wheel, a power of two. A plant that
+    // reproduces with probability 0.2 waits longer than a turn about once
+    // in a million times.
+    private static final int WHEEL_SIZE = 64;
+
+    // The field the plants are in.
+    private Field field;
+    // The number of growing steps so far.
+    private int clock;
+    // The cells of each bucket, one bit per cell.
+    private long[][] buckets;
+    // The plant last scheduled in each cell, and the growing step it is
+    // due at, or -1 if it is never due.
+    private Plant[] plants;
+    private int[] due;
+    // The probability whose logarithm was worked out last, and the
+    // logarithm of one minus it.
+    private double lastProbability;
+    private double lastLog;
+
+    /**
+     * Create a scheduler with no plants.
+     * @param field The field the plants are in.
+     */
+    public PlantScheduler(Field field)
+    {
+        this.field = field;
+        int cells = field.getDepth() * field.getWidth();
+        buckets = new long[WHEEL_SIZE][((cells - 1) >> 6) + 1];
+        plants = new Plant[cells];
+        due = new int[cells];
+        lastProbability = -1;
+        clear();
+    }
+
+    /**
+     * Forget all plants, e.g. when the simulation starts again.
+     */
+    public void clear()
+    {
+        for(long[] bucket : buckets) {
+            Arrays.fill(bucket, 0);
+        }
+        Arrays.fill(plants, null);
+        Arrays.fill(due, -1);
+        clock = 0;
+    }
+
+    /**
+     * Schedule a plant that has just appeared, or that was never scheduled.
+     * Its first chance to reproduce is the next growing step.
+     * @param plant The plant.
+     */
+    public void add(Plant plant)
+    {
+        schedule(plant, Randomizer.current());
+    }
+
+    /**
+     * Schedule plants, one after the other.
+     * @param newPlants The plants.
+     */
+    public void addAll(List<Plant> newPlants)
+    {
+        RandomGenerator rand = Randomizer.current();
+        for(Plant plant : newPlants) {
+            schedule(plant, rand);
+        }
+    }
+
+    /**
+     * Run a growing step: let the plants due in it reproduce, and
+     * schedule them and their young again.
+     * @param newPlants A list to receive newly born plants.
+     */
+    public void grow(List<Plant> newPlants)
+    {
+        RandomGenerator rand = Randomizer.current();
+        clock++;
+        int first = newPlants.size();
+        long[] bits = buckets[clock & (WHEEL_SIZE - 1)];
+        for(int word = 0; word < bits.length; word++) {
+            long set = bits[word];
+            while(set != 0) {
+                int bit = Long.numberOfTrailingZeros(set);
+                set &= set - 1;
+                int cell = (word << 6) + bit;
+                int when = due[cell];
+                if(when > clock && ((when - clock) & (WHEEL_SIZE - 1)) == 0) {
+                    // Due a whole turn or more later.
+                    continue;
+                }
+                bits[word] &= ~(1L << bit);
+                Plant plant = plants[cell];
+                if(plant == null) {
+                    continue;
+                }
+                if(!plant.isAlive() || cellOf(plant) != cell) {
+                    // Dead, or dead and since reused elsewhere by a pool.
+                    plants[cell] = null;
+                    due[cell] = -1;
+                }
+                else if(when == clock) {
+                    int born = newPlants.size();
+                    plant.spread(newPlants);
+                    // The young are only scheduled at the end, so forget
+                    // the dead plants their cells held now, in case they
+                    // were made out of them.
+                    for(int i = born; i < newPlants.size(); i++) {
+                        int young = cellOf(newPlants.get(i));
+                        plants[young] = null;
+                        due[young] = -1;
+                    }
+                    schedule(plant, rand);
+                }
+            }
+        }
+        for(int i = first; i < newPlants.size(); i++) {
+            schedule(newPlants.get(i), rand);
+        }
+    }
+
+    /**
+     * @return The number of growing steps so far.
+     */
+    public int getClock()
+    {
+        return clock;
+    }
+
+    /**
+     * Forget all plants and set the number of growing steps so far, before
+     * the plants of a checkpoint are put back with put.
+     * @param clock The number of growing steps so far.
+     */
+    public void restore(int clock)
+    {
+        clear();
+        this.clock = clock;
+    }
+
+    /**
+     * Put back a plant that was scheduled before, without drawing when it
+     * is due again. Bits left behind by dead plants are not put back, but
+     * they never made a plant reproduce, so the plants reproduce just as
+     * they would have.
+     * @param plant The plant.
+     * @param when The growing step it is due at, as getDue gave it.
+     */
+    public void put(Plant plant, int when)
+    {
+        int cell = cellOf(plant);
+        plants[cell] = plant;
+        due[cell] = when;
+        if(when >= 0) {
+            buckets[when & (WHEEL_SIZE - 1)][cell >> 6] |= 1L << cell;
+        }
+    }
+
+    /**
+     * @param plant A living plant.
+     * @return The growing step it is due at, or -1 if it is never due.
+     */
+    public int getDue(Plant plant)
+    {
+        int cell = cellOf(plant);
+        return plants[cell] == plant ? due[cell] : -1;
+    }
+
+    /**
+     * Draw when a plant reproduces next and put its cell in that bucket.
+     * @param plant The plant.
+     * @param rand The generator to draw from.
+     */
+    private void schedule(Plant plant, RandomGenerator rand)
+    {
+        int cell = cellOf(plant);
+        plants[cell] = plant;
+        double probability = plant.getReproductionProbability();
+        // A plant that never reproduces is never due.
+        if(probability <= 0) {
+            due[cell] = -1;
+            return;
+        }
+        int when = clock + delay(probability, rand);
+        due[cell] = when;
+        buckets[when & (WHEEL_SIZE - 1)][cell >> 6] |= 1L << cell;
+    }
+
+    /**
+     * @param plant A plant.
+     * @return The cell it is in, or a negative number if it is not in the field.
+     */
+    private int cellOf(Plant plant)
+    {
+        return plant.getRow() * field.getWidth() + plant.getCol();
+    }
+
+    /**
+     * Draw how many growing steps from now a plant reproduces next.
+     * @param probability The probability of the plant reproducing in a
+     *                    step, more than zero.
+     * @param rand The generator to draw from.
+     * @return The number of steps, at least one.
+     */
+    private int delay(double probability, RandomGenerator rand)
+    {
+        if(probability >= 1) {
+            return 1;
+        }
+        if(probability != lastProbability) {
+            lastProbability = probability;
+            lastLog = Math.log1p(-probability);
+        }
+        // Invert the distribution function; 1 - nextDouble() is never zero.
+        double steps = Math.log(1 - rand.nextDouble()) / lastLog;
+        return 1 + (int) Math.min(steps, Integer.MAX_VALUE / 2);
+    }
+}
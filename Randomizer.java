@@ -1,10 +1,26 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * Provide control over the randomization of the simulation. By using the shared, fixed-seed 
  * randomizer, repeated runs will perform exactly the same (which helps with testing). Set 
  * 'useShared' to false to get different random behaviour every time.
  * 
+ * A Randomizer object hands out streams of its own instead: each part of
+ * a step (and each tile, see TiledEngine) gets a generator seeded from the
+ * randomizer's seed, the step and a key, so no stream depends on how many
+ * numbers another one has drawn. A run with streams gives the same result
+ * whatever order or thread its parts run in. The shared generator is still
+ * what is used when no stream is bound, so that a run can still be made
+ * from a single generator. The simulation draws other numbers from it
+ * than it did before the streams, so those older runs are not repeated.
+ * 
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
  */
@@ -13,15 +29,70 @@ public class Randomizer
     // The default seed for control of randomization.
     private static final int SEED = 1111;
     // A shared Random object, if required.
-    private static final Random rand = new Random(SEED);
+    private static Random rand = new Random(SEED);
     // Determine whether a shared random generator is to be provided.
     private static final boolean useShared = true;
+    // A stream bound to the current thread, which takes the place of
+    // the shared generator while part of a step is being worked on.
+    private static final ThreadLocal<RandomGenerator> bound = new ThreadLocal<>();
+
+    // Keys for the parts of a step that draw from streams of their own.
+    public static final int POPULATE = 1;
+    public static final int WEATHER = 2;
+    public static final int ANIMALS = 3;
+    public static final int PLANTS = 4;
+    public static final int SPAWN = 5;
+
+    // The seed all streams of this randomizer are derived from.
+    private long seed;
 
     /**
      * Constructor for objects of class Randomizer
      */
     public Randomizer()
     {
+        this(SEED);
+    }
+
+    /**
+     * Create a randomizer whose streams are derived from the given seed.
+     * @param seed The seed for all streams.
+     */
+    public Randomizer(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * @return The seed all streams are derived from.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Provide the stream for one part of a step. The same arguments always
+     * give the same sequence, whichever thread asks for it and in whatever order.
+     * @param step The step of the simulation.
+     * @param key Which part of the step the stream is for, e.g. WEATHER.
+     * @return A generator seeded from the arguments.
+     */
+    public RandomGenerator stream(long step, int key)
+    {
+        return new SplittableRandom(mix(seed + mix(step + mix(key))));
+    }
+
+    /**
+     * Provide the stream for one tile of the field in one phase of a step.
+     * @param step The step of the simulation.
+     * @param phase Which part of the step the stream is for.
+     * @param tile The tile of the field.
+     * @return A generator seeded from the arguments.
+     */
+    public RandomGenerator forTile(long step, int phase, int tile)
+    {
+        return new SplittableRandom(mix(seed + mix(step + mix(phase + mix(tile)))));
     }
 
     /**
@@ -37,6 +108,105 @@ public class Randomizer
             return new Random();
         }
     }
+
+    /**
+     * Provide the generator the simulation should draw from on this thread:
+     * the bound stream if there is one, otherwise the shared generator.
+     * @return A random generator.
+     */
+    public static RandomGenerator current()
+    {
+        RandomGenerator random = bound.get();
+        if(random != null) {
+            return random;
+        }
+        return getRandom();
+    }
+    
+    /**
+     * Make current return the given stream on the current thread,
+     * until unbind is called.
+     * @param random The stream to use on this thread.
+     */
+    public static void bind(RandomGenerator random)
+    {
+        bound.set(random);
+    }
+    
+    /**
+     * Make current on the current thread go back to the shared generator.
+     */
+    public static void unbind()
+    {
+        bound.remove();
+    }
+    
+    /**
+     * Scramble a number so that nearby inputs give unrelated outputs
+     * (the finishing step of SplitMix64).
+     * @param z The number to scramble.
+     * @return The scrambled number.
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * Capture the state of the shared generator, so that it can be put
+     * back with setSharedState and go on with the same numbers.
+     * Random only exposes its state through serialization.
+     * @return The serialized shared generator.
+     */
+    public static byte[] getSharedState()
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(rand);
+        }
+        catch(IOException e) {
+            // Writing to memory does not fail.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Put back the state of the shared generator.
+     * @param state A state returned by getSharedState.
+     * @throws IOException If the state cannot be read.
+     */
+    public static void setSharedState(byte[] state) throws IOException
+    {
+        setSharedState(readSharedState(state));
+    }
+    
+    /**
+     * Read a state of the shared generator without putting it back yet.
+     * @param state A state returned by getSharedState.
+     * @return A generator in that state.
+     * @throws IOException If the state cannot be read.
+     */
+    static Random readSharedState(byte[] state) throws IOException
+    {
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(state))) {
+            return (Random) in.readObject();
+        }
+        catch(ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not a random generator state.", e);
+        }
+    }
+    
+    /**
+     * Make a generator read with readSharedState the shared generator.
+     * @param generator The generator.
+     */
+    static void setSharedState(Random generator)
+    {
+        rand = generator;
+    }
     
     /**
      * Reset the randomization.
@@ -0,0 +1,138 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * One headless run of a simulation, until it is no longer viable or has
+ * run a number of steps: the step it stopped at, the step every species
+ * died out at and the counts it ended with. Ensemble and Sweep run many
+ * of them at once, on a work-stealing pool (see runAll).
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class Replica
+{
+    // The step the run stopped at.
+    private int lastStep;
+    // The step each species died out at, or -1 if it did not, by code.
+    private int[] extinctions;
+    // The count of each species at the end, by code.
+    private int[] counts;
+
+    /**
+     * Keep the result of a finished run.
+     * @param lastStep The step the run stopped at.
+     * @param extinctions The step each species died out at, or -1.
+     * @param counts The count of each species at the end.
+     */
+    private Replica(int lastStep, int[] extinctions, int[] counts)
+    {
+        this.lastStep = lastStep;
+        this.extinctions = extinctions;
+        this.counts = counts;
+    }
+
+    /**
+     * Run a simulation until it is no longer viable or reaches a step.
+     * @param simulator The simulation, ready to run.
+     * @param steps The step to stop at.
+     * @param cancelled Tells whether to stop early; asked before every step.
+     * @param eachStep Told the number of every step reached, the first
+     *                 one included, before the next is run, or null.
+     * @return The result of the run, or null if it was stopped early.
+     */
+    public static Replica run(Simulator simulator, int steps, BooleanSupplier cancelled,
+                              IntConsumer eachStep)
+    {
+        Field field = simulator.getField();
+        int count = Species.count();
+        int[] extinctions = new int[count];
+        Arrays.fill(extinctions, -1);
+        while(true) {
+            for(int species = Species.NONE + 1; species < count; species++) {
+                if(extinctions[species] < 0 && field.getCount(species) == 0) {
+                    extinctions[species] = simulator.getStep();
+                }
+            }
+            if(eachStep != null) {
+                eachStep.accept(simulator.getStep());
+            }
+            if(simulator.getStep() >= steps || !simulator.isViable()) {
+                break;
+            }
+            if(cancelled.getAsBoolean()) {
+                return null;
+            }
+            simulator.simulateOneStep();
+        }
+        int[] counts = new int[count];
+        for(int species = Species.NONE + 1; species < count; species++) {
+            counts[species] = field.getCount(species);
+        }
+        return new Replica(simulator.getStep(), extinctions, counts);
+    }
+
+    /**
+     * Run tasks on a work-stealing pool of their own and wait for them
+     * all. The pool's threads are stopped afterwards. If the waiting
+     * thread is interrupted, it stops waiting and keeps the interrupt.
+     * @param tasks The tasks.
+     * @param threads The number of threads.
+     * @throws ExecutionException If a task failed, with its exception.
+     */
+    public static void runAll(List<Callable<Void>> tasks, int threads) throws ExecutionException
+    {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for(Future<Void> task : pool.invokeAll(tasks)) {
+                task.get();
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The step the run stopped at.
+     */
+    public int getLastStep()
+    {
+        return lastStep;
+    }
+
+    /**
+     * @param species A species code.
+     * @return The step the species died out at, or -1 if it did not.
+     */
+    public int getExtinctionStep(int species)
+    {
+        return extinctions[species];
+    }
+
+    /**
+     * @return The step each species died out at, or -1, indexed by code.
+     */
+    public int[] getExtinctionSteps()
+    {
+        return extinctions.clone();
+    }
+
+    /**
+     * @param species A species code.
+     * @return The count of the species when the run stopped.
+     */
+    public int getCount(int species)
+    {
+        return counts[species];
+    }
+}
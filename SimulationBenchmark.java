@@ -0,0 +1,110 @@
+/**
+ * Measure how many simulation steps per second can be run on the
+ * default sized field, first headless and then with the graphical
+ * view attached (if there is a display to show it on).
+ * Run with "scaling" as the first argument to measure instead how the
+ * tiled engine scales from one thread up to one per core on a large field.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class SimulationBenchmark
+{
+    // The depth of the field used for the measurements.
+    private static final int DEPTH = 200;
+    // The width of the field used for the measurements.
+    private static final int WIDTH = 250;
+    // Steps run before timing starts, so that the JIT has warmed up.
+    private static final int WARMUP_STEPS = 200;
+    // Steps timed for each measurement.
+    private static final int MEASURED_STEPS = 1000;
+    // The side of the square field used to measure scaling.
+    private static final int SCALING_SIZE = 1000;
+    // Steps timed for each scaling measurement.
+    private static final int SCALING_STEPS = 100;
+
+    /**
+     * Run the measurements and print the results.
+     * @param args Optionally the number of steps to time, or "scaling"
+     *             followed optionally by the field size and number of steps.
+     */
+    public static void main(String[] args)
+    {
+        if(args.length > 0 && args[0].equals("scaling")) {
+            int size = args.length > 1 ? Integer.parseInt(args[1]) : SCALING_SIZE;
+            int steps = args.length > 2 ? Integer.parseInt(args[2]) : SCALING_STEPS;
+            scaling(size, steps);
+            System.exit(0);
+        }
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : MEASURED_STEPS;
+        System.out.printf("headless:  %.1f steps/s%n", stepsPerSecond(false, steps));
+        if(!java.awt.GraphicsEnvironment.isHeadless()) {
+            System.out.printf("with view: %.1f steps/s%n", stepsPerSecond(true, steps));
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Time a number of steps on a freshly populated field.
+     * The simulation is reset whenever it stops being viable so that
+     * every timed step does a comparable amount of work.
+     * @param withView true to attach the graphical view.
+     * @param steps The number of steps to time.
+     * @return The number of steps run per second.
+     */
+    public static double stepsPerSecond(boolean withView, int steps)
+    {
+        Randomizer.reset();
+        Simulator simulator = new Simulator(DEPTH, WIDTH, withView);
+        run(simulator, WARMUP_STEPS);
+        long start = System.nanoTime();
+        run(simulator, steps);
+        long elapsed = System.nanoTime() - start;
+        return steps * 1e9 / elapsed;
+    }
+
+    /**
+     * Time the tiled engine with one thread, then doubling up to one
+     * thread per core, and print the speed-up over one thread.
+     * The populations are printed too: they should be the same on every
+     * line, as the engine gives the same result for any number of threads.
+     * @param size The side of the square field.
+     * @param steps The number of steps to time.
+     */
+    public static void scaling(int size, int steps)
+    {
+        int cores = Runtime.getRuntime().availableProcessors();
+        FieldStats stats = new FieldStats();
+        double single = 0;
+        int threads = 1;
+        while(threads <= cores) {
+            Randomizer.reset();
+            Simulator simulator = new Simulator(size, size, false);
+            simulator.setThreads(threads);
+            run(simulator, WARMUP_STEPS);
+            long start = System.nanoTime();
+            run(simulator, steps);
+            double rate = steps * 1e9 / (System.nanoTime() - start);
+            if(threads == 1) {
+                single = rate;
+            }
+            System.out.printf("%3d threads: %8.2f steps/s  x%.2f  %s%n", threads, rate,
+                              rate / single, stats.getPopulationDetails(simulator.getField()));
+            threads = threads < cores ? Math.min(threads * 2, cores) : cores + 1;
+        }
+    }
+
+    /**
+     * Run the given number of steps, starting again from a new
+     * population if the simulation dies out.
+     */
+    private static void run(Simulator simulator, int steps)
+    {
+        for(int i = 0; i < steps; i++) {
+            if(!simulator.isViable()) {
+                simulator.reset();
+            }
+            simulator.simulateOneStep();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder events the simulation emits, so that CPU
+ * samples, allocations and GC pauses in a recording can be tied to the
+ * steps they happened in, e.g. in JDK Mission Control. They are under
+ * "Simulation" and are enabled like any other event, e.g. with
+ * -XX:StartFlightRecording. A step gives one Step event, one Phase
+ * event for each of its phases and one Population event per species.
+ * When no recording is running they are not committed, and their
+ * fields are not even filled in.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class SimulationEvents
+{
+    /**
+     * Nothing to create; see the events below.
+     */
+    private SimulationEvents()
+    {
+    }
+
+    /**
+     * Start timing a step.
+     * @return The event of the step.
+     */
+    static Step beginStep()
+    {
+        Step event = new Step();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Start timing the first phase of a step.
+     * @return The event of the phase.
+     */
+    static Phase beginPhase()
+    {
+        Phase event = new Phase();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End a phase and start timing the next one.
+     * @param done The event of the phase that ended.
+     * @param step The number of the step.
+     * @param phase The phase that ended, e.g. StepMetrics.ANIMALS.
+     * @return The event of the next phase.
+     */
+    static Phase nextPhase(Phase done, int step, int phase)
+    {
+        endPhase(done, step, phase);
+        return beginPhase();
+    }
+
+    /**
+     * End the last phase of a step.
+     * @param done The event of the phase that ended.
+     * @param step The number of the step.
+     * @param phase The phase that ended, e.g. StepMetrics.OBSERVERS.
+     */
+    static void endPhase(Phase done, int step, int phase)
+    {
+        done.end();
+        if(done.shouldCommit()) {
+            done.step = step;
+            done.phase = StepMetrics.getPhaseName(phase);
+            done.commit();
+        }
+    }
+
+    /**
+     * End a step and record the weather, time of day and populations
+     * it ended with.
+     * @param event The event of the step.
+     * @param step The number of the step.
+     * @param condition The weather and time of day.
+     * @param field The field of the simulation.
+     */
+    static void endStep(Step event, int step, Condition condition, Field field)
+    {
+        event.end();
+        if(event.shouldCommit()) {
+            StringBuilder population = new StringBuilder();
+            for(int species = Species.NONE + 1; species < Species.count(); species++) {
+                int count = field.getCount(species);
+                if(field.getSpecies(species).isAnimal()) {
+                    event.animals += count;
+                }
+                else {
+                    event.plants += count;
+                }
+                population.append(Species.getName(species)).append(": ").append(count).append(' ');
+            }
+            event.step = step;
+            event.weather = condition.getWeather();
+            event.day = condition.day();
+            event.population = population.toString().trim();
+            event.commit();
+        }
+        if(new Population().isEnabled()) {
+            for(int species = Species.NONE + 1; species < Species.count(); species++) {
+                Population count = new Population();
+                count.step = step;
+                count.species = Species.getName(species);
+                count.count = field.getCount(species);
+                count.commit();
+            }
+        }
+    }
+
+    /**
+     * A whole step of the simulation, observers included.
+     */
+    @Name("simulation.Step")
+    @Label("Simulation Step")
+    @Category("Simulation")
+    @Description("A step of the simulation, with the weather and populations it ended with")
+    @StackTrace(false)
+    static class Step extends Event
+    {
+        @Label("Step")
+        long step;
+        @Label("Weather")
+        String weather;
+        @Label("Day")
+        boolean day;
+        @Label("Animals")
+        int animals;
+        @Label("Plants")
+        int plants;
+        @Label("Population")
+        String population;
+    }
+
+    /**
+     * A phase of a step: weather, animals, plants, spawn or observers.
+     */
+    @Name("simulation.Phase")
+    @Label("Simulation Phase")
+    @Category("Simulation")
+    @Description("A phase of a step of the simulation")
+    @StackTrace(false)
+    static class Phase extends Event
+    {
+        @Label("Step")
+        long step;
+        @Label("Phase")
+        String phase;
+    }
+
+    /**
+     * The number of one species in the field after a step.
+     */
+    @Name("simulation.Population")
+    @Label("Population")
+    @Category("Simulation")
+    @Description("The number of one species in the field after a step")
+    @StackTrace(false)
+    static class Population extends Event
+    {
+        @Label("Step")
+        long step;
+        @Label("Species")
+        String species;
+        @Label("Count")
+        int count;
+    }
+}
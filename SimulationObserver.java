@@ -0,0 +1,18 @@
+/**
+ * Something that wants to be told about the state of the simulation
+ * after every step, e.g. a graphical view or a logger.
+ * The simulation runs the same whether or not any observers are attached.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public interface SimulationObserver
+{
+    /**
+     * Show the current status of the field.
+     * @param step Which iteration step it is.
+     * @param field The field whose status is to be displayed.
+     * @param condition The current weather and time of day.
+     */
+    void showStatus(int step, Field field, Condition condition);
+}
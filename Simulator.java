@@ -1,8 +1,12 @@
-import java.util.Random;
+import java.util.random.RandomGenerator;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.awt.Color;
+import java.awt.GraphicsEnvironment;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.Properties;
 
 /**
  * A simple predator-prey simulator, based on a rectangular field
@@ -15,37 +19,65 @@ public class Simulator
     private static final int DEFAULT_WIDTH = 250;
     // The default depth of the grid.
     private static final int DEFAULT_DEPTH = 200;
-    // The probability that a lion will be created in any given grid position.
-    private static final double LION_CREATION_PROBABILITY = 0.01;
-    // The probability that a marmot will be created in any given grid position.
-    private static final double MARMOT_CREATION_PROBABILITY = 0.04;    
-    // The probability that a hyena will be created in any given grid position.
-    private static final double HYENA_CREATION_PROBABILITY = 0.02;
-    // The probability that a buffalo will be created in any given grid position.
-    private static final double BUFALLO_CREATION_PROBABILITY = 0.03;
-    // The probability that a zebra will be created in any given grid position.
-    private static final double ZEBRA_CREATION_PROBABILITY = 0.05;
-    // The probability that a cycad will be created in any given grid position.
-    private static final double CYCAD_CREATION_PROBABILITY = 0.13;
-    // The probability that a grass will be created in any given grid position.
-    private static final double GRASS_CREATION_PROBABILITY = 0.21;
     //The probability of a plant appearing on a free spot in the field.
     private static final double CYCAD_APPEARENCE_PROBABILITY = 0.025;
     //The probability of a plant appearing on a free spot in the field.
     private static final double GRASS_APPEARENCE_PROBABILITY = 0.05;
+    // The keys of a configuration that are not those of a species.
+    private static final List<String> CONFIGURATION_KEYS =
+        List.of("rainProbability", "dryProbability", "fogProbability",
+                "cycadAppearanceProbability", "grassAppearanceProbability");
     
+    // The probabilities of a cycad and of grass appearing on a free spot
+    // in this simulation, which start as the ones above (see configure).
+    private double cycadAppearance;
+    private double grassAppearance;
+    // The probability of either plant appearing on a free spot: a cycad is
+    // tried first and grass only if no cycad appeared.
+    private double plantAppearance;
     // Condition in the enviroment(e.g. fog, rain, day ... ). 
     private Condition condition; 
     // List of animals in the field.
     private List<Animal> animals;
     //List of plants in the field.
     private List<Plant> plants;
+    // The animals and plants born in a step, kept from step to step so
+    // that their room is only made once.
+    private List<Animal> newAnimals;
+    private List<Plant> newPlants;
     // The current state of the field.
     private Field field;
     // The current step of the simulation.
     private int step;
-    // A graphical view of the simulation.
-    private SimulatorView view;
+    // Views and other observers told about the state after every step.
+    private List<SimulationObserver> observers;
+    // Puts new plants on the free spots chosen by the field.
+    private PlantSpawner spawner;
+    // Runs steps on several threads, or null to run them on this one.
+    private TiledEngine engine;
+    // The seeded streams the parts of a step draw their random numbers from.
+    private Randomizer streams;
+    // Whether the parts of a step that run on this thread use the single
+    // shared generator, as the simulation always did, instead of streams.
+    // The numbers are drawn differently from the original version, so a
+    // seed does not give the runs it gave then.
+    private boolean sharedStream;
+    // How densely reset fills the field, as a multiple of the creation
+    // probabilities.
+    private double density;
+    // Keeps the animals as arrays of primitives, or null to keep them as objects.
+    private AnimalStore store;
+    // Whether the store works out whole nights at once.
+    private boolean batchNights;
+    // Times the phases of every step and counts births, deaths and kills,
+    // or null when the simulation is not measured.
+    private StepMetrics metrics;
+    // Decides ahead of time when each plant reproduces, or null to roll
+    // for every plant in every step.
+    private PlantScheduler scheduler;
+    // Everything the simulation has been configured with, later keys
+    // taking the place of earlier ones.
+    private Properties configuration;
     
     /**
      * Construct a simulation field with default size.
@@ -57,10 +89,48 @@ public class Simulator
     
     /**
      * Create a simulation field with the given size.
+     * A graphical view is attached unless there is no display available.
      * @param depth Depth of the field. Must be greater than zero.
      * @param width Width of the field. Must be greater than zero.
      */
     public Simulator(int depth, int width)
+    {
+        this(depth, width, !GraphicsEnvironment.isHeadless());
+    }
+    
+    /**
+     * Create a simulation field with the given size.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param withView true to attach a graphical view, false to run headless.
+     */
+    public Simulator(int depth, int width, boolean withView)
+    {
+        this(depth, width, withView, null);
+    }
+    
+    /**
+     * Create a headless simulation whose random numbers all come from
+     * streams of the given seed, from the first population on, so that it
+     * shares no random state with any other simulation and can run on any
+     * thread alongside them.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param seed The seed for all streams.
+     */
+    public Simulator(int depth, int width, long seed)
+    {
+        this(depth, width, false, new Randomizer(seed));
+    }
+    
+    /**
+     * Create a simulation field with the given size.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param withView true to attach a graphical view, false to run headless.
+     * @param seeded The streams to draw from, or null for the shared generator.
+     */
+    private Simulator(int depth, int width, boolean withView, Randomizer seeded)
     {
         if(width <= 0 || depth <= 0) {
             System.out.println("The dimensions must be greater than zero.");
@@ -71,24 +141,87 @@ public class Simulator
         
         animals = new ArrayList<>();
         plants = new ArrayList<>();
+        newAnimals = new ArrayList<>();
+        newPlants = new ArrayList<>();
         field = new Field(depth, width);
         condition = new Condition();
+        observers = new ArrayList<>();
+        spawner = new PlantSpawner();
+        streams = seeded != null ? seeded : new Randomizer();
+        sharedStream = seeded == null;
+        density = 1;
+        configuration = new Properties();
+        setPlantAppearance(CYCAD_APPEARENCE_PROBABILITY, GRASS_APPEARENCE_PROBABILITY);
 
-        // Create a view of the state of each location in the field.
-        view = new SimulatorView(depth, width);
-        view.setColor(Marmot.class, Color.YELLOW);
-        view.setColor(Lion.class, Color.BLUE);
-        view.setColor(Hyena.class, Color.RED);
-        view.setColor(Buffalo.class, Color.CYAN);
-        view.setColor(Zebra.class, Color.BLACK);
-        
-        view.setColor(Cycad.class, Color.GRAY);
-        view.setColor(Grass.class, Color.GREEN);
+        if(withView) {
+            observers.add(createView(depth, width));
+        }
         
         // Setup a valid starting point.
         reset();
     }
     
+    /**
+     * Run a simulation of the default size, with a view unless there is
+     * no display, e.g. "java Simulator species.properties 500".
+     * @param args Optionally a species file to read first (see
+     *             Species.load), and the number of steps, 4000 by default.
+     * @throws IOException If the species file cannot be read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int next = 0;
+        if(args.length > next && !args[next].matches("\\d+")) {
+            Species.load(args[next++]);
+        }
+        int steps = args.length > next ? Integer.parseInt(args[next]) : 4000;
+        Simulator simulator = new Simulator();
+        // This simulation lives as long as the JVM, so its measurements
+        // can be watched, e.g. in JConsole, all along.
+        simulator.setMetrics(true);
+        simulator.getMetrics().register();
+        simulator.simulate(steps);
+        System.out.println("Step " + simulator.getStep() + ": "
+                           + new FieldStats().getPopulationDetails(simulator.getField()));
+    }
+    
+    /**
+     * Create a view of the state of each location in the field.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @return The view, with a color set for every species.
+     */
+    private static SimulatorView createView(int depth, int width)
+    {
+        SimulatorView view = new SimulatorView(depth, width);
+        for(int species = Species.NONE + 1; species < Species.count(); species++) {
+            Color color = Species.get(species).getColor();
+            if(color != null) {
+                view.setColor(species, color);
+            }
+        }
+        return view;
+    }
+    
+    /**
+     * Attach an observer that is told about the state after every step.
+     * @param observer The observer to attach.
+     */
+    public void addObserver(SimulationObserver observer)
+    {
+        observers.add(observer);
+        observer.showStatus(step, field, condition);
+    }
+    
+    /**
+     * Detach an observer so that it is no longer told about new steps.
+     * @param observer The observer to detach.
+     */
+    public void removeObserver(SimulationObserver observer)
+    {
+        observers.remove(observer);
+    }
+    
     /**
      * Run the simulation from its current state for a reasonably long period,
      * (4000 steps).
@@ -105,7 +238,7 @@ public class Simulator
      */
     public void simulate(int numSteps)
     {
-        for(int step = 1; step <= numSteps && view.isViable(field); step++) {
+        for(int step = 1; step <= numSteps && isViable(); step++) {
             simulateOneStep();
             // delay(60);   // uncomment this to run more slowly
         }
@@ -120,83 +253,721 @@ public class Simulator
     public void simulateOneStep()
     {
         step++;
+        StepMetrics metrics = this.metrics;
+        long time = metrics != null ? metrics.startStep() : 0;
+        SimulationEvents.Step stepEvent = SimulationEvents.beginStep();
+        SimulationEvents.Phase phaseEvent = SimulationEvents.beginPhase();
         
-        //Change weather with every step;
-        condition.changeWeather();
-        //Increment time of the day with every step.
-        condition.incrementTime();
+        try {
+            //Change weather with every step;
+            bindStream(Randomizer.WEATHER);
+            condition.changeWeather();
+            //Increment time of the day with every step.
+            condition.incrementTime();
+            if(metrics != null) {
+                time = metrics.endPhase(StepMetrics.WEATHER, time);
+            }
+            phaseEvent = SimulationEvents.nextPhase(phaseEvent, step, StepMetrics.WEATHER);
 
-        // Provide space for newborn animals.
-        List<Animal> newAnimals = new ArrayList<>();        
-        // Let all animals act depending on the enviroment condition.
-        if(!condition.day()){
-            for(Iterator<Animal> it = animals.iterator(); it.hasNext(); ) {
-                Animal animal = it.next();
-                animal.sleep();
-                if(! animal.isAlive()) {
-                    it.remove();
+            // Let all animals act depending on the enviroment condition.
+            if(store != null) {
+                bindStream(Randomizer.ANIMALS);
+                store.step(condition);
+            }
+            else if(engine != null) {
+                animals = engine.actAnimals(animals, field, condition, step, streams);
+            }
+            else {
+                bindStream(Randomizer.ANIMALS);
+                actAnimals();
+            }
+            if(metrics != null) {
+                time = metrics.endPhase(StepMetrics.ANIMALS, time);
+            }
+            phaseEvent = SimulationEvents.nextPhase(phaseEvent, step, StepMetrics.ANIMALS);
+            
+            //let all plants to reproduce. If weather is dry, then don't reproduce.
+            if (!condition.dryWeather()){
+                if(scheduler != null) {
+                    bindStream(Randomizer.PLANTS);
+                    growPlants();
+                }
+                else if(engine != null) {
+                    plants = engine.reproducePlants(plants, field, step, streams);
                 }
+                else {
+                    bindStream(Randomizer.PLANTS);
+                    reproducePlants();
+                }
+                if(metrics != null) {
+                    time = metrics.endPhase(StepMetrics.PLANTS, time);
+                }
+                phaseEvent = SimulationEvents.nextPhase(phaseEvent, step, StepMetrics.PLANTS);
+                // Let new plants appear on free spots.
+                bindStream(Randomizer.SPAWN);
+                field.sampleFreeCells(plantAppearance, spawner);
+                if(metrics != null) {
+                    time = metrics.endPhase(StepMetrics.SPAWN, time);
+                }
+                phaseEvent = SimulationEvents.nextPhase(phaseEvent, step, StepMetrics.SPAWN);
             }
-        }
-        else if(condition.fogWeather()){
-            for(Iterator<Animal> it = animals.iterator(); it.hasNext(); ) {
-                Animal animal = it.next();
-                animal.actAtFog(newAnimals);
-                if(! animal.isAlive()) {
-                    it.remove();
+            else if(scheduler != null) {
+                dropDeadPlants();
+                if(metrics != null) {
+                    time = metrics.endPhase(StepMetrics.PLANTS, time);
                 }
+                phaseEvent = SimulationEvents.nextPhase(phaseEvent, step, StepMetrics.PLANTS);
             }
+            else{
+                removeDeadPlants();
+                if(metrics != null) {
+                    time = metrics.endPhase(StepMetrics.PLANTS, time);
+                }
+                phaseEvent = SimulationEvents.nextPhase(phaseEvent, step, StepMetrics.PLANTS);
+            }
+        }
+        finally {
+            Randomizer.unbind();
         }
-        else{
-            for(Iterator<Animal> it = animals.iterator(); it.hasNext(); ) {
-                Animal animal = it.next();
+
+        notifyObservers();
+        if(metrics != null) {
+            metrics.endPhase(StepMetrics.OBSERVERS, time);
+            metrics.endStep(step);
+        }
+        SimulationEvents.endPhase(phaseEvent, step, StepMetrics.OBSERVERS);
+        SimulationEvents.endStep(stepEvent, step, condition, field);
+    }
+    
+    /**
+     * Make the next part of the step draw from its own stream,
+     * unless the simulation uses the single shared generator.
+     * @param key Which part of the step is next, e.g. Randomizer.WEATHER.
+     */
+    private void bindStream(int key)
+    {
+        if(!sharedStream) {
+            Randomizer.bind(streams.stream(step, key));
+        }
+    }
+    
+    /**
+     * Let all animals act, one after the other on this thread.
+     * The animals still alive are moved down over those that died as
+     * they go, keeping their order, so that a step with many deaths costs
+     * no more than any other. An animal eaten after its turn is dropped
+     * at its turn in the next step, as it always was. Dropped animals go
+     * to the pool, if there is one.
+     */
+    private void actAnimals()
+    {
+        // Provide space for newborn animals.
+        newAnimals.clear();
+        EntityPool pool = field.getPool();
+        boolean night = !condition.day();
+        boolean fog = condition.fogWeather();
+        int count = animals.size();
+        int live = 0;
+        for(int i = 0; i < count; i++) {
+            Animal animal = animals.get(i);
+            if(night) {
+                animal.sleep();
+            }
+            else if(fog) {
+                animal.actAtFog(newAnimals);
+            }
+            else {
                 animal.act(newAnimals);
-                if(! animal.isAlive()) {
-                    it.remove();
-                }
+            }
+            if(animal.isAlive()) {
+                animals.set(live++, animal);
+            }
+            else if(pool != null) {
+                pool.release(animal);
             }
         }
-        //infectAnimals();       
+        keepFirst(animals, live);
         // Add the newly born animals to the main lists.
-        animals.addAll(newAnimals);
-        
+        for(int i = 0; i < newAnimals.size(); i++) {
+            animals.add(newAnimals.get(i));
+        }
+    }
+    
+    /**
+     * Let all plants reproduce, one after the other on this thread,
+     * moving the plants still alive down over the dead ones as they go.
+     */
+    private void reproducePlants()
+    {
         // Provide space for new plants.
-        List<Plant> newPlants = new ArrayList<>(); 
-        //let all plants to reproduce. If weather is dry, then don't reproduce.
-        if (!condition.dryWeather()){
-            for(Iterator<Plant> it = plants.iterator(); it.hasNext();){
-                Plant plant = it.next();
-                plant.reproduce(newPlants);
-                if(!plant.isAlive()){
-                    it.remove();
-                }            
+        newPlants.clear();
+        EntityPool pool = field.getPool();
+        int count = plants.size();
+        int live = 0;
+        for(int i = 0; i < count; i++) {
+            Plant plant = plants.get(i);
+            plant.reproduce(newPlants);
+            if(plant.isAlive()) {
+                plants.set(live++, plant);
             }
-            List<Location> empty = field.getEmptyLocations();
-            Random rand = Randomizer.getRandom();
-            for (Location it: empty){
-                if(rand.nextDouble() <= CYCAD_APPEARENCE_PROBABILITY) {           
-                    Cycad cycad = new Cycad(field, it);
-                    plants.add(cycad);
-                }   
-                else if(rand.nextDouble() <= GRASS_APPEARENCE_PROBABILITY) {          
-                    Grass grass = new Grass(field, it);
-                    plants.add(grass);
-                } 
+            else if(pool != null) {
+                pool.release(plant);
             }
         }
-        else{
-            for(Iterator<Plant> it = plants.iterator(); it.hasNext();){
-                Plant plant = it.next();
-                if(!plant.isAlive()){
-                    it.remove();
-                }            
+        keepFirst(plants, live);
+        // Add the newly born plants to the main lists.
+        for(int i = 0; i < newPlants.size(); i++) {
+            plants.add(newPlants.get(i));
+        }
+    }
+    
+    /**
+     * Take the plants that died out of the list of plants, keeping the
+     * order of the others, and give them to the pool, if there is one.
+     */
+    private void removeDeadPlants()
+    {
+        EntityPool pool = field.getPool();
+        int count = plants.size();
+        int live = 0;
+        for(int i = 0; i < count; i++) {
+            Plant plant = plants.get(i);
+            if(plant.isAlive()) {
+                plants.set(live++, plant);
+            }
+            else if(pool != null) {
+                pool.release(plant);
             }
         }
-        
-        // Add the newly born plants to the main lists.
-        plants.addAll(newPlants);                
+        keepFirst(plants, live);
+    }
+    
+    /**
+     * Cut a list down to its first entries.
+     * @param list The list.
+     * @param size The number of entries to keep.
+     */
+    private static <T> void keepFirst(List<T> list, int size)
+    {
+        if(size < list.size()) {
+            list.subList(size, list.size()).clear();
+        }
+    }
+    
+    /**
+     * Let the plants the scheduler has due in this step reproduce.
+     */
+    private void growPlants()
+    {
+        newPlants.clear();
+        scheduler.grow(newPlants);
+        for(int i = 0; i < newPlants.size(); i++) {
+            plants.add(newPlants.get(i));
+        }
+        dropDeadPlants();
+    }
+    
+    /**
+     * Take the plants that died out of the list of plants, but only once
+     * there are as many of them as living plants, so that a step with the
+     * scheduler does not go through every plant.
+     */
+    private void dropDeadPlants()
+    {
+        int living = 0;
+        for(int code = Species.NONE + 1; code < Species.count(); code++) {
+            if(!field.getSpecies(code).isAnimal()) {
+                living += field.getCount(code);
+            }
+        }
+        if(plants.size() >= 2 * living) {
+            removeDeadPlants();
+        }
+    }
+    
+    /**
+     * Choose how the animal and plant phases of a step are run.
+     * With zero threads everything runs on the calling thread in list
+     * order, as it always has. With one or more threads the field is
+     * worked on tile by tile (see TiledEngine); such runs give the same
+     * result for any number of threads. The threads of an engine that
+     * is no longer needed are stopped.
+     * @param threads The number of threads, or zero for the plain loop.
+     */
+    public void setThreads(int threads)
+    {
+        if(Math.max(threads, 0) == getThreads()) {
+            return;
+        }
+        if(engine != null) {
+            engine.shutdown();
+        }
+        engine = threads > 0 ? new TiledEngine(threads) : null;
+    }
+    
+    /**
+     * Choose whether the animals are kept as objects or as arrays of
+     * primitives in an AnimalStore, which takes much less memory and is
+     * quicker to step through. Stored animals always act on the calling
+     * thread; plants still use the threads set with setThreads.
+     * The simulation starts again from a new population.
+     * @param enabled true to keep the animals in a store.
+     */
+    public void setAnimalStore(boolean enabled)
+    {
+        store = enabled ? new AnimalStore(field) : null;
+        if(store != null) {
+            store.setBatchNights(batchNights);
+        }
+        reset();
+    }
+    
+    /**
+     * Choose whether the animals in the store go through a whole night
+     * at once, worked out at its first step, instead of step by step
+     * (see AnimalStore.setBatchNights). Weather, plants and observers
+     * still go step by step, and every animal dies in the step it would
+     * have died in; only who catches a disease is drawn differently,
+     * with the same odds. Animals kept as objects always sleep step by
+     * step.
+     * @param enabled true to work out nights at once.
+     */
+    public void setBatchNights(boolean enabled)
+    {
+        batchNights = enabled;
+        if(store != null) {
+            store.setBatchNights(enabled);
+        }
+    }
+    
+    /**
+     * @return true if the animals in the store go through a night at once.
+     */
+    public boolean usesBatchNights()
+    {
+        return batchNights;
+    }
+    
+    /**
+     * Change the species, weather and plant growth of this simulation
+     * only, e.g. to run simulations with different parameters side by
+     * side. The keys are those of a species file (see Species.load),
+     * except that no species can be added, and these:
+     * <pre>
+     *   rainProbability, dryProbability, fogProbability
+     *   cycadAppearanceProbability, grassAppearanceProbability
+     * </pre>
+     * A key that is none of these is an error, and a configuration that
+     * is not valid changes nothing. The simulation starts again from a
+     * new population.
+     * @param config The configuration.
+     * @throws IllegalArgumentException If the configuration is not valid.
+     */
+    public void configure(Properties config)
+    {
+        applyConfiguration(config);
+        reset();
+    }
+    
+    /**
+     * Change the species, weather and plant growth as configure does,
+     * but without starting again, e.g. before a checkpoint is restored.
+     * @param config The configuration.
+     * @throws IllegalArgumentException If the configuration is not valid.
+     */
+    void applyConfiguration(Properties config)
+    {
+        checkKeys(config);
+        // Try it on copies of the species first, so that nothing changes
+        // unless all of it is valid.
+        for(int code = Species.NONE + 1; code < Species.count(); code++) {
+            Species species = field.getSpecies(code);
+            species.copy().configure(config, species.getName() + ".");
+        }
+        double rain = getDouble(config, "rainProbability", condition.getRainProbability());
+        double dry = getDouble(config, "dryProbability", condition.getDryProbability());
+        double fog = getDouble(config, "fogProbability", condition.getFogProbability());
+        double cycad = getDouble(config, "cycadAppearanceProbability", cycadAppearance);
+        double grass = getDouble(config, "grassAppearanceProbability", grassAppearance);
 
-        view.showStatus(step, field, condition);
+        for(int code = Species.NONE + 1; code < Species.count(); code++) {
+            Species species = field.getSpecies(code);
+            species.configure(config, species.getName() + ".");
+        }
+        condition.setProbabilities(rain, dry, fog);
+        setPlantAppearance(cycad, grass);
+        if(store != null) {
+            store.copySpecies();
+        }
+        configuration.putAll(config);
+    }
+    
+    /**
+     * Check that every key of a configuration is one configure knows.
+     * @param config The configuration.
+     * @throws IllegalArgumentException If a key is not.
+     */
+    static void checkKeys(Properties config)
+    {
+        Species.checkKeys(config, CONFIGURATION_KEYS);
+    }
+    
+    /**
+     * @return Everything the simulation has been configured with, which
+     *         is empty if it has never been configured.
+     */
+    Properties getConfiguration()
+    {
+        return configuration;
+    }
+    
+    /**
+     * @return The number under a key, or the default if there is none.
+     */
+    private static double getDouble(Properties config, String key, double defaultValue)
+    {
+        String value = config.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+    
+    /**
+     * Set how likely plants are to appear on free spots.
+     * @param cycad The probability of a cycad appearing on a free spot.
+     * @param grass The probability of grass appearing where no cycad did.
+     */
+    private void setPlantAppearance(double cycad, double grass)
+    {
+        cycadAppearance = cycad;
+        grassAppearance = grass;
+        plantAppearance = cycad + (1 - cycad) * grass;
+    }
+    
+    /**
+     * Choose whether plants roll for reproducing in every step, as they
+     * always did, or are scheduled by a PlantScheduler, which decides
+     * once how many growing steps each plant waits before it reproduces
+     * next. Both give plants that reproduce equally often, but with the
+     * scheduler a step only touches the plants that reproduce in it. The
+     * scheduled plants reproduce on the calling thread, whatever is set
+     * with setThreads. The plants there are now are scheduled afresh.
+     * @param enabled true to schedule the plants.
+     */
+    public void setPlantScheduler(boolean enabled)
+    {
+        scheduler = enabled ? new PlantScheduler(field) : null;
+        schedulePlants();
+    }
+    
+    /**
+     * Choose whether dead animals and plants are made into new ones of
+     * the same species, instead of new objects being made for every
+     * birth and every plant that appears (see EntityPool). Runs are the
+     * same either way; there is only less for the garbage collector to
+     * do. Animals in a store are not objects, and steps run on threads
+     * make new objects while the tiles are worked on.
+     * @param enabled true to reuse dead animals and plants.
+     */
+    public void setPooling(boolean enabled)
+    {
+        if(enabled != usesPooling()) {
+            field.setPool(enabled ? new EntityPool() : null);
+        }
+    }
+    
+    /**
+     * @return true if dead animals and plants are reused.
+     */
+    public boolean usesPooling()
+    {
+        return field.getPool() != null;
+    }
+    
+    /**
+     * @return true if the plants are scheduled by a PlantScheduler.
+     */
+    public boolean usesPlantScheduler()
+    {
+        return scheduler != null;
+    }
+    
+    /**
+     * @return The scheduler of the plants, or null if they are not scheduled.
+     */
+    PlantScheduler getPlantScheduler()
+    {
+        return scheduler;
+    }
+    
+    /**
+     * Schedule all living plants afresh, if there is a scheduler, e.g.
+     * when it is turned on. Since how long a plant waits does
+     * not depend on how long it has waited, this changes nothing but
+     * which random numbers are drawn.
+     */
+    private void schedulePlants()
+    {
+        if(scheduler == null) {
+            return;
+        }
+        scheduler.clear();
+        removeDeadPlants();
+        bindStream(Randomizer.POPULATE);
+        try {
+            scheduler.addAll(plants);
+        }
+        finally {
+            Randomizer.unbind();
+        }
+    }
+    
+    /**
+     * Choose whether every step is measured: how long its phases take,
+     * how many animals and plants are born, die and are eaten, and how
+     * much it allocates. When off, a step only checks that it is off.
+     * The measurements are only published through JMX once asked to be
+     * with getMetrics().register(), since the MBean server keeps what it
+     * publishes, and with it the simulation, until it is unregistered;
+     * turning the measurements off unregisters them. main publishes them.
+     * @param enabled true to measure steps from now on.
+     */
+    public void setMetrics(boolean enabled)
+    {
+        if(enabled && metrics == null) {
+            metrics = new StepMetrics(field);
+        }
+        else if(!enabled && metrics != null) {
+            metrics.unregister();
+            metrics = null;
+        }
+        field.setMetrics(metrics);
+    }
+    
+    /**
+     * @return The measurements of the steps, or null if they are not measured.
+     */
+    public StepMetrics getMetrics()
+    {
+        return metrics;
+    }
+    
+    /**
+     * @return The store the animals are kept in, or null if they are objects.
+     */
+    public AnimalStore getAnimalStore()
+    {
+        return store;
+    }
+    
+    /**
+     * @return The number of threads steps are run with, or zero for the plain loop.
+     */
+    public int getThreads()
+    {
+        return engine == null ? 0 : engine.getThreads();
+    }
+    
+    /**
+     * Write the whole state of the simulation to a checkpoint file, from
+     * which loadCheckpoint can carry on exactly where it left off.
+     * @param fileName The name of the file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void saveCheckpoint(String fileName) throws IOException
+    {
+        Checkpoint.save(this, Path.of(fileName));
+    }
+    
+    /**
+     * Put the simulation back in the state written by saveCheckpoint.
+     * The field must be of the same size and the species the same.
+     * A simulation that has never been configured takes the configuration
+     * the checkpoint was written with; one that has been must have the
+     * same one. The plants are scheduled, each due when it was, if they
+     * were when the checkpoint was written, and not otherwise. If the
+     * file cannot be read, the simulation is left as it was.
+     * @param fileName The name of the file.
+     * @throws IOException If the file cannot be read or does not fit.
+     */
+    public void loadCheckpoint(String fileName) throws IOException
+    {
+        Checkpoint.load(this, Path.of(fileName));
+        notifyObservers();
+    }
+    
+    /**
+     * Put the simulation back in the state of a checkpoint read from a channel.
+     * @param channel Where to read the checkpoint from.
+     * @throws IOException If it cannot be read or does not fit.
+     */
+    void loadCheckpoint(ReadableByteChannel channel) throws IOException
+    {
+        Checkpoint.read(this, channel);
+        notifyObservers();
+    }
+    
+    /**
+     * Empty the simulation and set it up as it was when a checkpoint was
+     * written, ready for the checkpoint's animals and plants.
+     * @param step The step it was at.
+     * @param seed The seed of its streams.
+     * @param sharedRandom true if it used the single shared generator.
+     * @param density How densely reset fills the field.
+     * @param stored true if its animals were kept in a store.
+     * @param scheduled true if its plants were scheduled; the scheduler
+     *                  is left empty, with its clock at zero.
+     */
+    void restore(int step, long seed, boolean sharedRandom, double density, boolean stored,
+                 boolean scheduled)
+    {
+        this.step = step;
+        streams = new Randomizer(seed);
+        sharedStream = sharedRandom;
+        this.density = density;
+        animals.clear();
+        plants.clear();
+        field.clear();
+        if(field.getPool() != null) {
+            field.getPool().clear();
+        }
+        store = stored ? new AnimalStore(field) : null;
+        if(store != null) {
+            store.setBatchNights(batchNights);
+        }
+        if(!scheduled) {
+            scheduler = null;
+        }
+        else if(scheduler == null) {
+            scheduler = new PlantScheduler(field);
+        }
+        else {
+            scheduler.clear();
+        }
+    }
+    
+    /**
+     * @return The animals kept as objects, in the order they act.
+     */
+    List<Animal> getAnimals()
+    {
+        return animals;
+    }
+    
+    /**
+     * @return The plants, in the order they reproduce unless they are
+     *         scheduled. Plants that died may not have been dropped yet.
+     */
+    List<Plant> getPlants()
+    {
+        return plants;
+    }
+    
+    /**
+     * @return true if the parts of a step on this thread use the shared generator.
+     */
+    boolean usesSharedRandom()
+    {
+        return sharedStream;
+    }
+    
+    /**
+     * @return How densely reset fills the field.
+     */
+    double getDensity()
+    {
+        return density;
+    }
+    
+    /**
+     * Make every part of a step draw its random numbers from a stream
+     * of its own derived from the given seed, so that a run depends only
+     * on the seed and not on the order its parts run in. Takes effect
+     * from the next step, or from the start after a reset.
+     * @param seed The seed for all streams.
+     */
+    public void setSeed(long seed)
+    {
+        streams = new Randomizer(seed);
+        sharedStream = false;
+    }
+    
+    /**
+     * Go back to drawing the random numbers of the parts of a step that
+     * run on this thread from the single shared generator, as the
+     * simulation always did. The runs are not those of the original
+     * version, though: the neighbours of a cell are shuffled, males are
+     * found and plants appear with other draws than it made (see
+     * Field.adjacentCells, MateIndex.findMale and Field.sampleFreeCells),
+     * so results kept from it must be made again to compare with. The
+     * tiles of a threaded run keep drawing from streams of the default
+     * seed.
+     */
+    public void useSharedRandom()
+    {
+        streams = new Randomizer();
+        sharedStream = true;
+    }
+    
+    /**
+     * @return The seed the streams are derived from.
+     */
+    public long getSeed()
+    {
+        return streams.getSeed();
+    }
+    
+    /**
+     * Determine whether the simulation should continue to run.
+     * This uses the counts the field keeps up to date, so it works
+     * the same with or without a view attached.
+     * @return true If there is more than one species alive.
+     */
+    public boolean isViable()
+    {
+        return field.countSpeciesPresent() > 1;
+    }
+    
+    /**
+     * @return The current step of the simulation.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+    
+    /**
+     * @return The weather and time of day of the simulation.
+     */
+    public Condition getCondition()
+    {
+        return condition;
+    }
+    
+    /**
+     * Set how densely the field is filled by the next reset.
+     * @param density A multiple of the usual creation probabilities,
+     *                so 1 gives the usual population.
+     */
+    public void setDensity(double density)
+    {
+        this.density = density;
+    }
+    
+    /**
+     * @return The field the simulation runs on.
+     */
+    public Field getField()
+    {
+        return field;
+    }
+    
+    /**
+     * Tell all attached observers about the current state.
+     */
+    private void notifyObservers()
+    {
+        for(SimulationObserver observer : observers) {
+            observer.showStatus(step, field, condition);
+        }
     }
         
     /**
@@ -207,10 +978,27 @@ public class Simulator
         step = 0;
         animals.clear();
         plants.clear();
-        populate();
+        if(store != null) {
+            store.clear();
+        }
+        // The dead of the last run are not kept into the next.
+        if(field.getPool() != null) {
+            field.getPool().clear();
+        }
+        bindStream(Randomizer.POPULATE);
+        try {
+            populate();
+            if(scheduler != null) {
+                scheduler.clear();
+                scheduler.addAll(plants);
+            }
+        }
+        finally {
+            Randomizer.unbind();
+        }
         
         // Show the starting state in the view.
-        view.showStatus(step, field, condition);
+        notifyObservers();
     }
     
     /**
@@ -218,52 +1006,78 @@ public class Simulator
      */
     private void populate()
     {
-        Random rand = Randomizer.getRandom();
+        RandomGenerator rand = Randomizer.current();
         field.clear();
         for(int row = 0; row < field.getDepth(); row++) {
             for(int col = 0; col < field.getWidth(); col++) {
-                if(rand.nextDouble() <= LION_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    String sex = new String();
-                    Lion lion = new Lion(true, field, location, Animal.giveSex());
-                    animals.add(lion);
-                }
-                else if(rand.nextDouble() <= HYENA_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Hyena hyena = new Hyena(true, field, location, Animal.giveSex());
-                    animals.add(hyena);
-                }
-                else if(rand.nextDouble() <= BUFALLO_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Buffalo buffalo = new Buffalo(true, field, location, Animal.giveSex());
-                    animals.add(buffalo);
+                // Species are tried in order of their codes; the first
+                // one chosen gets the location.
+                for(int code = Species.NONE + 1; code < Species.count(); code++) {
+                    Species species = field.getSpecies(code);
+                    if(rand.nextDouble() <= species.getCreationProbability() * density) {
+                        if(species.isAnimal()) {
+                            addAnimal(code, row, col);
+                        }
+                        else {
+                            plants.add(field.makePlant(code, new Location(row, col)));
+                        }
+                        break;
+                    }
                 }
-                else if(rand.nextDouble() <= MARMOT_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Marmot marmot = new Marmot(true, field, location, Animal.giveSex());
-                    animals.add(marmot);
-                }                                
-                else if(rand.nextDouble() <= ZEBRA_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    String sex = new String();
-                    Zebra zebra = new Zebra(true, field, location, Animal.giveSex());
-                    animals.add(zebra);
-                }
-                else if(rand.nextDouble() <= CYCAD_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);           
-                    Cycad cycad = new Cycad(field, location);
-                    plants.add(cycad);
-                }   
-                else if(rand.nextDouble() <= GRASS_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);           
-                    Grass grass = new Grass(field, location);
-                    plants.add(grass);
-                }         
                 // else leave the location empty.
             }
         }
     }
     
+    /**
+     * Add an animal with a random age and sex to the field,
+     * either as an object or into the animal store.
+     * @param species The species of the animal.
+     * @param row The row of the free location to put it in.
+     * @param col The column of the location.
+     */
+    private void addAnimal(int species, int row, int col)
+    {
+        if(store != null) {
+            store.addWithRandomAge(species, row, col);
+            return;
+        }
+        Location location = new Location(row, col);
+        animals.add(field.makeAnimal(species, true, location, Animal.giveSex()));
+    }
+    
+    /**
+     * Puts a new plant on each free spot the field chooses for one.
+     * The field has already decided that some plant appears there;
+     * this decides which one.
+     */
+    private class PlantSpawner implements CellVisitor
+    {
+        /**
+         * Put a cycad or grass on the given free spot.
+         * @param row The row of the spot.
+         * @param col The column of the spot.
+         * @return Always false, so that sampling goes on.
+         */
+        public boolean visit(int row, int col)
+        {
+            Location location = new Location(row, col);
+            RandomGenerator rand = Randomizer.current();
+            Plant plant;
+            if(rand.nextDouble() * plantAppearance <= cycadAppearance) {
+                plant = field.makePlant(Species.CYCAD, location);
+            }
+            else {
+                plant = field.makePlant(Species.GRASS, location);
+            }
+            plants.add(plant);
+            if(scheduler != null) {
+                scheduler.add(plant);
+            }
+            return false;
+        }
+    }
+    
     /**
      * Pause for a given time.
      * @param millisec  The time to pause for, in milliseconds
@@ -1,20 +1,37 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import javax.swing.*;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 /**
  * A graphical view of the simulation grid.
  * The view displays a colored rectangle for each location 
  * representing its contents. It uses a default background color.
- * Colors for each type of species can be defined using the
+ * Colors for each species can be defined using the
  * setColor method.
  * 
+ * The simulation never waits for the view. showStatus only copies the
+ * species of every cell into a frame and hands it over; a thread of the
+ * view's own draws the newest frame into an off-screen image whenever
+ * it is free, and the frames it had no time for are skipped. Drawing
+ * goes into one image while the window shows the other, and the two
+ * are swapped once a frame is complete.
+ * 
+ * The mouse wheel zooms in and out, dragging moves the part shown and
+ * a double click shows the whole field again. A field with too many
+ * cells for an image of its own is drawn from a FieldPyramid instead,
+ * at the coarsest level that still gives every pixel its own block,
+ * and only for the part of the field that is shown.
+ * 
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
  */
-public class SimulatorView extends JFrame
+public class SimulatorView extends JFrame implements SimulationObserver
 {
     // Colors used for empty locations.
     private static final Color EMPTY_COLOR = Color.white;
@@ -28,12 +45,31 @@ public class SimulatorView extends JFrame
     private JLabel stepLabel, population, infoLabel;
     private FieldView fieldView;
     
-    // A map for storing colors for participants in the simulation
-    private Map<Class, Color> colors;
+    // The RGB colors of the participants in the simulation, indexed by
+    // species code; the NONE entry is the color of empty locations.
+    private int[] palette;
+    // Changed with every color, so that images are drawn again in full.
+    private volatile int paletteVersion;
     // A statistics object computing and storing simulation information
     private FieldStats stats;
     
     private Condition cond;
+    
+    // The newest frame that has not been drawn yet, or null.
+    private AtomicReference<Frame> pending;
+    // A frame that was drawn or skipped, to be filled again, or null.
+    private AtomicReference<Frame> spare;
+    // Whether the labels and the field are already waiting to be shown.
+    private AtomicBoolean showQueued;
+    // The texts of the newest frame drawn.
+    private volatile String stepText, statusText;
+    // Set when the part of the field shown is moved, for the renderer to
+    // draw it again when it works from the overview.
+    private AtomicBoolean viewMoved;
+    // Draws the frames, at its own pace.
+    private Thread renderer;
+    // The number of frames drawn, and skipped because newer ones came first.
+    private volatile long framesDrawn, framesSkipped;
 
     /**
      * Create a view of the given width and height.
@@ -43,7 +79,9 @@ public class SimulatorView extends JFrame
     public SimulatorView(int height, int width)
     {
         stats = new FieldStats();
-        colors = new LinkedHashMap<>();
+        palette = new int[Species.count()];
+        Arrays.fill(palette, UNKNOWN_COLOR.getRGB());
+        palette[Species.NONE] = EMPTY_COLOR.getRGB();
 
         setTitle("Predator and Prey Simulation");
         stepLabel = new JLabel(STEP_PREFIX, JLabel.CENTER);
@@ -64,16 +102,25 @@ public class SimulatorView extends JFrame
         contents.add(population, BorderLayout.SOUTH);
         pack();
         setVisible(true);
+        
+        pending = new AtomicReference<>();
+        spare = new AtomicReference<>();
+        showQueued = new AtomicBoolean();
+        viewMoved = new AtomicBoolean();
+        renderer = new Thread(this::render, "Simulation view renderer");
+        renderer.setDaemon(true);
+        renderer.start();
     }
     
     /**
-     * Define a color to be used for a given class of animal.
-     * @param animalClass The animal's Class object.
-     * @param color The color to be used for the given class.
+     * Define a color to be used for a given species.
+     * @param species The species code.
+     * @param color The color to be used for the given species.
      */
-    public void setColor(Class animalClass, Color color)
+    public void setColor(int species, Color color)
     {
-        colors.put(animalClass, color);
+        palette[species] = color.getRGB();
+        paletteVersion++;
     }
 
     /**
@@ -85,56 +132,100 @@ public class SimulatorView extends JFrame
     }
 
     /**
-     * @return The color to be used for a given class of animal.
-     */
-    private Color getColor(Class animalClass)
-    {
-        Color col = colors.get(animalClass);
-        if(col == null) {
-            // no color defined for this class
-            return UNKNOWN_COLOR;
-        }
-        else {
-            return col;
-        }
-    }
-
-    /**
-     * Show the current status of the field.
+     * Show the current status of the field. This only takes a copy of
+     * it, which is drawn later on the view's own thread.
      * @param step Which iteration step it is.
      * @param field The field whose status is to be displayed.
      * @param cond The condition - diaplay's weather and day or night.
      */
     public void showStatus(int step, Field field, Condition cond)
     {
-        if(!isVisible()) {
-            setVisible(true);
+        int cells = field.getDepth() * field.getWidth();
+        Frame frame = spare.getAndSet(null);
+        if(frame == null || frame.codes.length != cells) {
+            frame = new Frame(cells);
         }
-            
-        stepLabel.setText(STEP_PREFIX + step);
-        stats.reset();
+        frame.step = step;
+        field.copySpeciesCodes(frame.codes);
+        frame.status = CONDITION_PREFIX + stats.getCondition(cond) + 
+        POPULATION_PREFIX + stats.getPopulationDetails(field);
         
-        fieldView.preparePaint();
-
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    stats.incrementCount(animal.getClass());
-                    fieldView.drawMark(col, row, getColor(animal.getClass()));
+        Frame skipped = pending.getAndSet(frame);
+        if(skipped != null) {
+            // The renderer did not get to it, so it is never shown.
+            framesSkipped++;
+            spare.set(skipped);
+        }
+        LockSupport.unpark(renderer);
+    }
+    
+    /**
+     * Draw the newest frame whenever there is one, until the view is
+     * disposed of. Runs on the renderer thread.
+     */
+    private void render()
+    {
+        while(!Thread.currentThread().isInterrupted()) {
+            Frame frame = pending.getAndSet(null);
+            boolean moved = viewMoved.getAndSet(false);
+            if(frame == null) {
+                if(moved) {
+                    fieldView.redraw();
                 }
                 else {
-                    fieldView.drawMark(col, row, EMPTY_COLOR);
+                    LockSupport.park(this);
                 }
+                continue;
+            }
+            fieldView.draw(frame.codes);
+            stepText = STEP_PREFIX + frame.step;
+            statusText = frame.status;
+            // The frame may be filled again from here on.
+            spare.compareAndSet(null, frame);
+            framesDrawn++;
+            if(!showQueued.getAndSet(true)) {
+                SwingUtilities.invokeLater(this::showFrame);
             }
         }
-        stats.countFinished();
-        
-        //condition.setText(CONDITION_PREFIX + stats.getCondition(cond));
-
-        population.setText(CONDITION_PREFIX + stats.getCondition(cond) + 
-        POPULATION_PREFIX + stats.getPopulationDetails(field));
-        fieldView.repaint();
+    }
+    
+    /**
+     * Show the newest frame drawn. Runs on the event dispatch thread.
+     */
+    private void showFrame()
+    {
+        showQueued.set(false);
+        if(!isVisible()) {
+            setVisible(true);
+        }
+        stepLabel.setText(stepText);
+        population.setText(statusText);
+    }
+    
+    /**
+     * @return The number of frames drawn so far.
+     */
+    public long getFramesDrawn()
+    {
+        return framesDrawn;
+    }
+    
+    /**
+     * @return The number of frames skipped because the view was still
+     *         drawing an earlier one when a newer one came.
+     */
+    public long getFramesSkipped()
+    {
+        return framesSkipped;
+    }
+    
+    /**
+     * Close the window and stop drawing.
+     */
+    public void dispose()
+    {
+        renderer.interrupt();
+        super.dispose();
     }
 
     /**
@@ -146,6 +237,29 @@ public class SimulatorView extends JFrame
         return stats.isViable(field);
     }
     
+    /**
+     * A copy of the state of the field at one step. The simulation fills
+     * it and hands it to the renderer, and from then on only the renderer
+     * uses it until it is given back as the spare frame.
+     */
+    private static class Frame
+    {
+        // The step the copy was taken at.
+        private int step;
+        // The species of every cell, as row * width + col.
+        private byte[] codes;
+        // The condition and population text.
+        private String status;
+
+        /**
+         * Create a frame for a field with the given number of cells.
+         */
+        public Frame(int cells)
+        {
+            codes = new byte[cells];
+        }
+    }
+    
     /**
      * Provide a graphical view of a rectangular field. This is 
      * a nested class (a class defined inside a class) which
@@ -157,12 +271,28 @@ public class SimulatorView extends JFrame
     private class FieldView extends JPanel
     {
         private final int GRID_VIEW_SCALING_FACTOR = 6;
+        // Fields with more cells than this are drawn from an overview.
+        private static final int MAX_IMAGE_CELLS = 1 << 22;
+        // The share of the screen a field larger than it is given.
+        private static final double SCREEN_SHARE = 0.8;
+        // How much one notch of the mouse wheel zooms.
+        private static final double ZOOM_STEP = 1.25;
+        // The fewest cells across that can be zoomed in to.
+        private static final int MIN_CELLS_SHOWN = 8;
 
         private int gridWidth, gridHeight;
-        private int xScale, yScale;
-        Dimension size;
-        private Graphics g;
-        private Image fieldImage;
+        // The image on screen, and the one being drawn by the renderer.
+        // They are swapped while holding this view's lock. They have a
+        // pixel per cell, or a pixel per pixel of the component when
+        // the field is drawn from the overview.
+        private FieldImage front, back;
+        // The overview of a field too large for an image, or null.
+        private FieldPyramid overview;
+        // The part of the field shown, in cells: left, top, width and depth.
+        // It is only ever replaced as a whole.
+        private volatile double[] shown;
+        // Where the mouse was last pressed or dragged to.
+        private Point dragFrom;
 
         /**
          * Create a new FieldView component.
@@ -171,65 +301,293 @@ public class SimulatorView extends JFrame
         {
             gridHeight = height;
             gridWidth = width;
-            size = new Dimension(0, 0);
+            if((long) height * width > MAX_IMAGE_CELLS) {
+                overview = new FieldPyramid(height, width);
+            }
+            showAll();
+            addMouseWheelListener(e -> zoom(Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()), e.getPoint()));
+            MouseAdapter dragger = new MouseAdapter() {
+                public void mousePressed(MouseEvent e)
+                {
+                    dragFrom = e.getPoint();
+                }
+
+                public void mouseDragged(MouseEvent e)
+                {
+                    pan(dragFrom.x - e.getX(), dragFrom.y - e.getY());
+                    dragFrom = e.getPoint();
+                }
+
+                public void mouseClicked(MouseEvent e)
+                {
+                    if(e.getClickCount() == 2) {
+                        showAll();
+                        viewChanged();
+                    }
+                }
+            };
+            addMouseListener(dragger);
+            addMouseMotionListener(dragger);
         }
 
         /**
-         * Tell the GUI manager how big we would like to be.
+         * Tell the GUI manager how big we would like to be. A field
+         * with more cells than there are pixels on the screen is given
+         * most of the screen, in its own proportions.
          */
         public Dimension getPreferredSize()
         {
-            return new Dimension(gridWidth * GRID_VIEW_SCALING_FACTOR,
-                                 gridHeight * GRID_VIEW_SCALING_FACTOR);
+            Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+            if(gridWidth <= screen.width && gridHeight <= screen.height) {
+                return new Dimension(gridWidth * GRID_VIEW_SCALING_FACTOR,
+                                     gridHeight * GRID_VIEW_SCALING_FACTOR);
+            }
+            double scale = SCREEN_SHARE * Math.min((double) screen.width / gridWidth,
+                                                   (double) screen.height / gridHeight);
+            return new Dimension(Math.max((int) (gridWidth * scale), 1),
+                                 Math.max((int) (gridHeight * scale), 1));
         }
 
         /**
-         * Prepare for a new round of painting. Since the component
-         * may be resized, compute the scaling factor again.
+         * Show the whole field.
          */
-        public void preparePaint()
+        private void showAll()
         {
-            if(! size.equals(getSize())) {  // if the size has changed...
-                size = getSize();
-                fieldImage = fieldView.createImage(size.width, size.height);
-                g = fieldImage.getGraphics();
-
-                xScale = size.width / gridWidth;
-                if(xScale < 1) {
-                    xScale = GRID_VIEW_SCALING_FACTOR;
-                }
-                yScale = size.height / gridHeight;
-                if(yScale < 1) {
-                    yScale = GRID_VIEW_SCALING_FACTOR;
-                }
+            shown = new double[] { 0, 0, gridWidth, gridHeight };
+        }
+
+        /**
+         * Zoom in or out, keeping the cell under a point where it is.
+         * Runs on the event dispatch thread.
+         * @param factor How many times larger cells get.
+         * @param point The point to zoom around.
+         */
+        private void zoom(double factor, Point point)
+        {
+            double[] window = shown;
+            double width = Math.min(Math.max(window[2] / factor, MIN_CELLS_SHOWN), gridWidth);
+            double depth = Math.min(Math.max(window[3] / factor, MIN_CELLS_SHOWN), gridHeight);
+            double x = window[0] + point.x * (window[2] - width) / Math.max(getWidth(), 1);
+            double y = window[1] + point.y * (window[3] - depth) / Math.max(getHeight(), 1);
+            showPart(x, y, width, depth);
+        }
+
+        /**
+         * Move the part of the field shown. Runs on the event dispatch thread.
+         * @param dx How many pixels to move right.
+         * @param dy How many pixels to move down.
+         */
+        private void pan(int dx, int dy)
+        {
+            double[] window = shown;
+            showPart(window[0] + dx * window[2] / Math.max(getWidth(), 1),
+                 window[1] + dy * window[3] / Math.max(getHeight(), 1), window[2], window[3]);
+        }
+
+        /**
+         * Show a part of the field, kept within the field.
+         */
+        private void showPart(double x, double y, double width, double depth)
+        {
+            x = Math.min(Math.max(x, 0), gridWidth - width);
+            y = Math.min(Math.max(y, 0), gridHeight - depth);
+            shown = new double[] { x, y, width, depth };
+            viewChanged();
+        }
+
+        /**
+         * Have the part of the field shown painted again, after the
+         * renderer has drawn it if it works from the overview.
+         */
+        private void viewChanged()
+        {
+            if(overview != null) {
+                viewMoved.set(true);
+                LockSupport.unpark(renderer);
+            }
+            else {
+                repaint();
             }
         }
-        
+
         /**
-         * Paint on grid location on this field in a given color.
+         * Draw a frame and then put it on screen. Runs on the renderer thread.
+         * @param codes The species of every cell, as row * width + col.
          */
-        public void drawMark(int x, int y, Color color)
+        public void draw(byte[] codes)
         {
-            g.setColor(color);
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
+            if(overview != null) {
+                overview.update(codes);
+                redraw();
+            }
+            else {
+                drawCells(codes);
+            }
         }
 
         /**
-         * The field view component needs to be redisplayed. Copy the
-         * internal image to screen.
+         * Draw a frame into the back image, a pixel per cell, and then put
+         * it on screen. Only the cells that differ from what the back
+         * image shows are written, and only the rows that changed are
+         * repainted. Runs on the renderer thread.
+         * @param codes The species of every cell, as row * width + col.
          */
-        public void paintComponent(Graphics g)
+        private void drawCells(byte[] codes)
         {
-            if(fieldImage != null) {
-                Dimension currentSize = getSize();
-                if(size.equals(currentSize)) {
-                    g.drawImage(fieldImage, 0, 0, null);
+            if(back == null) {
+                back = new FieldImage(gridWidth, gridHeight);
+            }
+            int version = paletteVersion;
+            boolean all = back.version != version;
+            back.version = version;
+            int[] pixels = back.pixels;
+            byte[] shownCodes = back.shown;
+            int firstRow = gridHeight;
+            int lastRow = -1;
+            for(int row = 0; row < gridHeight; row++) {
+                boolean changed = false;
+                int end = (row + 1) * gridWidth;
+                for(int cell = row * gridWidth; cell < end; cell++) {
+                    byte species = codes[cell];
+                    if(all || species != shownCodes[cell]) {
+                        shownCodes[cell] = species;
+                        pixels[cell] = palette[species];
+                        changed = true;
+                    }
                 }
-                else {
-                    // Rescale the previous image.
-                    g.drawImage(fieldImage, 0, 0, currentSize.width, currentSize.height, null);
+                if(changed) {
+                    firstRow = Math.min(firstRow, row);
+                    lastRow = row;
+                }
+            }
+            swap();
+            if(lastRow >= 0) {
+                // The back image was two frames behind, so its changes
+                // cover those since the frame on screen.
+                double[] window = shown;
+                int height = getHeight();
+                int top = (int) Math.floor((firstRow - window[1]) * height / window[3]);
+                int bottom = (int) Math.ceil((lastRow + 1 - window[1]) * height / window[3]);
+                top = Math.max(top, 0);
+                bottom = Math.min(bottom, height);
+                if(bottom > top) {
+                    repaint(0, top, getWidth(), bottom - top);
+                }
+            }
+        }
+
+        /**
+         * Draw the part of the field shown from the overview into the back
+         * image, a pixel per pixel of the component, and put it on screen.
+         * Every pixel reads one block of the coarsest level that is no
+         * wider than it, and blocks are paler the emptier they are.
+         * Runs on the renderer thread.
+         */
+        public void redraw()
+        {
+            int width = Math.max(getWidth(), 1);
+            int height = Math.max(getHeight(), 1);
+            if(back == null || back.image.getWidth() != width || back.image.getHeight() != height) {
+                back = new FieldImage(width, height);
+            }
+            double[] window = shown;
+            double cellsAcross = window[2] / width;
+            double cellsDown = window[3] / height;
+            int level = overview.chooseLevel(Math.min(cellsAcross, cellsDown));
+            int[] pixels = back.pixels;
+            int empty = palette[Species.NONE];
+            for(int y = 0; y < height; y++) {
+                int row = Math.min((int) (window[1] + (y + 0.5) * cellsDown), gridHeight - 1);
+                for(int x = 0; x < width; x++) {
+                    int col = Math.min((int) (window[0] + (x + 0.5) * cellsAcross), gridWidth - 1);
+                    int color;
+                    if(level < 0) {
+                        color = palette[overview.getSpeciesAt(row, col)];
+                    }
+                    else {
+                        color = blend(empty, palette[overview.getMajority(level, row, col)],
+                                      overview.getDensity(level, row, col));
+                    }
+                    pixels[y * width + x] = color;
                 }
             }
+            swap();
+            repaint();
+        }
+
+        /**
+         * @return A color between two RGB colors.
+         * @param from The color at 0.
+         * @param to The color at 1.
+         * @param share How far to go from the first color to the second.
+         */
+        private int blend(int from, int to, double share)
+        {
+            int weight = (int) (share * 256);
+            int red = ((from >> 16) & 0xFF) + ((((to >> 16) & 0xFF) - ((from >> 16) & 0xFF)) * weight >> 8);
+            int green = ((from >> 8) & 0xFF) + ((((to >> 8) & 0xFF) - ((from >> 8) & 0xFF)) * weight >> 8);
+            int blue = (from & 0xFF) + (((to & 0xFF) - (from & 0xFF)) * weight >> 8);
+            return (red << 16) | (green << 8) | blue;
+        }
+
+        /**
+         * Put the image just drawn on screen, and take the other one to
+         * draw the next frame into.
+         */
+        private synchronized void swap()
+        {
+            FieldImage drawn = back;
+            back = front;
+            front = drawn;
+        }
+
+        /**
+         * The field view component needs to be redisplayed. Scale the
+         * part of the newest complete image that is shown to the component.
+         */
+        public synchronized void paintComponent(Graphics g)
+        {
+            super.paintComponent(g);
+            if(front == null) {
+                return;
+            }
+            if(overview != null) {
+                g.drawImage(front.image, 0, 0, getWidth(), getHeight(), null);
+            }
+            else {
+                double[] window = shown;
+                g.drawImage(front.image, 0, 0, getWidth(), getHeight(),
+                            (int) window[0], (int) window[1],
+                            (int) Math.ceil(window[0] + window[2]),
+                            (int) Math.ceil(window[1] + window[3]), null);
+            }
+        }
+    }
+    
+    /**
+     * An image of the field with one pixel per cell, whose pixels are
+     * written straight into its data buffer.
+     */
+    private static class FieldImage
+    {
+        // The image and its pixels, as row * width + col.
+        private BufferedImage image;
+        private int[] pixels;
+        // The species each pixel shows.
+        private byte[] shown;
+        // The palette version the pixels were drawn with, or -1 before
+        // anything was drawn.
+        private int version;
+
+        /**
+         * Create an image of a field of the given size.
+         */
+        public FieldImage(int width, int height)
+        {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            shown = new byte[width * height];
+            version = -1;
         }
     }
 }
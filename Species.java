@@ -0,0 +1,717 @@
+import java.awt.Color;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The species of the simulation and what they are like.
+ * Every species has a numeric code, so that per-species data can be kept
+ * in plain arrays instead of maps keyed by class. Code 0 stands for
+ * "nothing", e.g. an empty cell.
+ *
+ * The built-in species have the codes below and the characteristics of
+ * their classes. A configuration file read with load can change those
+ * characteristics and add animal species of its own, which get the codes
+ * after the built-in ones and are made as ConfiguredAnimal objects.
+ * What every animal eats, and how much each food is worth to it, is kept
+ * in a diet matrix indexed by eater and food.
+ *
+ * The species object also stands for the members of its species that the
+ * field keeps without an object, such as the animals of an AnimalStore.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class Species
+{
+    // No species at all.
+    public static final int NONE = 0;
+    public static final int LION = 1;
+    public static final int HYENA = 2;
+    public static final int BUFFALO = 3;
+    public static final int MARMOT = 4;
+    public static final int ZEBRA = 5;
+    public static final int CYCAD = 6;
+    public static final int GRASS = 7;
+    // The number of built-in codes, including NONE.
+    public static final int BUILT_IN = 8;
+    // The most species there can be, as codes are kept in bytes.
+    private static final int MAX_SPECIES = 127;
+    // The highest maxAge and food level an animal can have, as an
+    // AnimalStore keeps ages and food levels in shorts; an animal may
+    // age by two past its maxAge before it dies.
+    static final int MAX_LEVEL = Short.MAX_VALUE - 2;
+    // The keys a configuration can give for every species, after its
+    // name and a dot, and those it can only give for animals.
+    private static final List<String> KEYS = List.of("creationProbability", "color");
+    private static final List<String> ANIMAL_KEYS =
+        List.of("breedingAge", "maxAge", "breedingProbability", "maxLitterSize", "searchRadius",
+                "huntsInFog", "startingFood", "newbornFood", "randomNewbornFood", "eats");
+
+    // Every species, indexed by code.
+    private static Species[] registry = new Species[BUILT_IN];
+    // The number of codes in use, including NONE.
+    private static int count;
+
+    static {
+        add(new Species("None", false));
+        animal("Lion", Predator.SEARCH_RADIUS, false, Lion.BREEDING_AGE, Lion.MAX_AGE,
+               Lion.BREEDING_PROBABILITY, Lion.MAX_LITTER_SIZE, 0.01, Color.BLUE, Lion::new);
+        animal("Hyena", Predator.SEARCH_RADIUS, false, Hyena.BREEDING_AGE, Hyena.MAX_AGE,
+               Hyena.BREEDING_PROBABILITY, Hyena.MAX_LITTER_SIZE, 0.02, Color.RED, Hyena::new);
+        animal("Buffalo", Prey.SEARCH_RADIUS, true, Buffalo.BREEDING_AGE, Buffalo.MAX_AGE,
+               Buffalo.BREEDING_PROBABILITY, Buffalo.MAX_LITTER_SIZE, 0.03, Color.CYAN, Buffalo::new);
+        animal("Marmot", Prey.SEARCH_RADIUS, true, Marmot.BREEDING_AGE, Marmot.MAX_AGE,
+               Marmot.BREEDING_PROBABILITY, Marmot.MAX_LITTER_SIZE, 0.04, Color.YELLOW, Marmot::new);
+        animal("Zebra", Prey.SEARCH_RADIUS, true, Zebra.BREEDING_AGE, Zebra.MAX_AGE,
+               Zebra.BREEDING_PROBABILITY, Zebra.MAX_LITTER_SIZE, 0.05, Color.BLACK, Zebra::new);
+        plant("Cycad", 0.13, Color.GRAY, Cycad::new);
+        plant("Grass", 0.21, Color.GREEN, Grass::new);
+
+        for(int predator = LION; predator <= HYENA; predator++) {
+            Species eater = registry[predator];
+            eater.newbornFood = Predator.MARMOT_FOOD_VALUE;
+            eater.setFood(MARMOT, Predator.MARMOT_FOOD_VALUE, true);
+            eater.setFood(ZEBRA, Predator.ZEBRA_FOOD_VALUE, true);
+            eater.setFood(BUFFALO, Predator.BUFFALO_FOOD_VALUE, false);
+        }
+        for(int prey = BUFFALO; prey <= ZEBRA; prey++) {
+            Species eater = registry[prey];
+            eater.newbornFood = Prey.CYCAD_FOOD_VALUE;
+            eater.randomNewbornFood = true;
+            eater.setFood(CYCAD, Prey.CYCAD_FOOD_VALUE, false);
+            eater.setFood(GRASS, Prey.GRASS_FOOD_VALUE, false);
+        }
+    }
+
+    // The species' code and name.
+    private int code;
+    private String name;
+    // true for animals, false for plants and NONE.
+    private boolean animal;
+    // The age from which an animal can breed, and the age it can live to.
+    private int breedingAge;
+    private int maxAge;
+    // The likelihood of an animal breeding in a step, and the most young
+    // it can have.
+    private double breedingProbability;
+    private int maxLitterSize;
+    // How far a female looks for a male to breed with.
+    private int searchRadius;
+    // Whether an animal looks for food in fog; if not it only moves.
+    private boolean huntsInFog;
+    // The food level of an animal made with a random age.
+    private int startingFood;
+    // The food level of a newborn, or the bound of its random food level.
+    private int newbornFood;
+    private boolean randomNewbornFood;
+    // The likelihood of a cell getting a member of the species when the
+    // field is populated. Species are tried in order of their codes.
+    private double creationProbability;
+    // The colour the species is shown in, or null for the view's default.
+    private Color color;
+    // The food level an animal has after eating each species, indexed by
+    // the code of the food, or zero for what it does not eat.
+    private int[] foodValues;
+    // Whether it only eats each species when its food level is below the value.
+    private boolean[] onlyWhenHungry;
+    // Make the animals or the plants of the species.
+    private AnimalFactory animalFactory;
+    private PlantFactory plantFactory;
+
+    /**
+     * Create a species with nothing to eat.
+     * @param name The name of the species.
+     * @param animal true for an animal species.
+     */
+    private Species(String name, boolean animal)
+    {
+        this.name = name;
+        this.animal = animal;
+        maxAge = 1;
+        maxLitterSize = 1;
+        searchRadius = Prey.SEARCH_RADIUS;
+        huntsInFog = true;
+        startingFood = 30;
+        newbornFood = Prey.CYCAD_FOOD_VALUE;
+        foodValues = new int[0];
+        onlyWhenHungry = new boolean[0];
+    }
+
+    /**
+     * Create a copy of a species, which can then be changed on its own.
+     * @param other The species to copy.
+     */
+    private Species(Species other)
+    {
+        code = other.code;
+        name = other.name;
+        animal = other.animal;
+        breedingAge = other.breedingAge;
+        maxAge = other.maxAge;
+        breedingProbability = other.breedingProbability;
+        maxLitterSize = other.maxLitterSize;
+        searchRadius = other.searchRadius;
+        huntsInFog = other.huntsInFog;
+        startingFood = other.startingFood;
+        newbornFood = other.newbornFood;
+        randomNewbornFood = other.randomNewbornFood;
+        creationProbability = other.creationProbability;
+        color = other.color;
+        foodValues = other.foodValues.clone();
+        onlyWhenHungry = other.onlyWhenHungry.clone();
+        animalFactory = other.animalFactory;
+        plantFactory = other.plantFactory;
+    }
+
+    /**
+     * Register a built-in animal species.
+     */
+    private static void animal(String name, int searchRadius, boolean huntsInFog, int breedingAge,
+                               int maxAge, double breedingProbability, int maxLitterSize,
+                               double creationProbability, Color color, AnimalFactory factory)
+    {
+        Species species = new Species(name, true);
+        species.searchRadius = searchRadius;
+        species.huntsInFog = huntsInFog;
+        species.breedingAge = breedingAge;
+        species.maxAge = maxAge;
+        species.breedingProbability = breedingProbability;
+        species.maxLitterSize = maxLitterSize;
+        species.creationProbability = creationProbability;
+        species.color = color;
+        species.animalFactory = factory;
+        add(species);
+    }
+
+    /**
+     * Register a built-in plant species.
+     */
+    private static void plant(String name, double creationProbability, Color color,
+                              PlantFactory factory)
+    {
+        Species species = new Species(name, false);
+        species.creationProbability = creationProbability;
+        species.color = color;
+        species.plantFactory = factory;
+        add(species);
+    }
+
+    /**
+     * Give a species the next code.
+     * @param species The species to register.
+     */
+    private static void add(Species species)
+    {
+        if(count == MAX_SPECIES) {
+            throw new IllegalArgumentException("There can be at most " + MAX_SPECIES + " species.");
+        }
+        if(count == registry.length) {
+            registry = Arrays.copyOf(registry, count * 2);
+        }
+        species.code = count;
+        registry[count++] = species;
+    }
+
+    /**
+     * Read species from a configuration file in the format of
+     * java.util.Properties. Must be called before any field is made, as
+     * fields size their arrays by the number of species. For example:
+     * <pre>
+     *   species = Cheetah
+     *   Cheetah.maxAge = 150
+     *   Cheetah.breedingAge = 10
+     *   Cheetah.breedingProbability = 0.08
+     *   Cheetah.maxLitterSize = 2
+     *   Cheetah.searchRadius = 7
+     *   Cheetah.huntsInFog = false
+     *   Cheetah.newbornFood = 20
+     *   Cheetah.eats = Marmot:20:hungry, Zebra:25
+     *   Cheetah.creationProbability = 0.01
+     *   Cheetah.color = #FF8800
+     *   Lion.maxAge = 300
+     * </pre>
+     * "species" lists the new animal species, in the order they get their
+     * codes. Every key may also be given for a built-in species, to change
+     * it. A diet entry is a food species and the food level after eating
+     * it, with ":hungry" if it is only eaten below that level.
+     * The other keys are startingFood and randomNewbornFood. A key that
+     * names no species, or nothing a species of its kind has, is an error,
+     * and so is a maxAge or food level above 32765 (see MAX_LEVEL).
+     * @param fileName The name of the file.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If the configuration is not valid.
+     */
+    public static void load(String fileName) throws IOException
+    {
+        Properties config = new Properties();
+        try(Reader reader = new FileReader(fileName)) {
+            config.load(reader);
+        }
+        configure(config);
+    }
+
+    /**
+     * Add and change species as a configuration says; see load.
+     * The whole configuration is applied to copies of the species first,
+     * so if it is not valid no species is added or changed.
+     * @param config The configuration.
+     * @throws IllegalArgumentException If the configuration is not valid.
+     */
+    public static void configure(Properties config)
+    {
+        Species[] species = copyAll();
+        for(String name : split(config.getProperty("species", ""), ",")) {
+            if(find(species, name) < 0) {
+                if(species.length == MAX_SPECIES) {
+                    throw new IllegalArgumentException("There can be at most " + MAX_SPECIES + " species.");
+                }
+                Species added = new Species(name, true);
+                int code = species.length;
+                added.code = code;
+                added.animalFactory = (randomAge, field, location, sex) ->
+                    new ConfiguredAnimal(code, randomAge, field, location, sex);
+                species = Arrays.copyOf(species, code + 1);
+                species[code] = added;
+            }
+        }
+        checkKeys(config, species, List.of("species"));
+        for(int code = NONE + 1; code < species.length; code++) {
+            species[code].configure(config, species[code].name + ".", species);
+        }
+        registry = species;
+        count = species.length;
+    }
+
+    /**
+     * Copy every species, so that one simulation can change its species
+     * without changing those of any other (see Simulator.configure).
+     * @return A copy of every species, indexed by code.
+     */
+    static Species[] copyAll()
+    {
+        Species[] copies = new Species[count];
+        for(int code = 0; code < count; code++) {
+            copies[code] = new Species(registry[code]);
+        }
+        return copies;
+    }
+
+    /**
+     * Check that every key of a configuration is a key of a species (see
+     * load) or one of the given other keys, so that a misspelt key is not
+     * just left out.
+     * @param config The configuration.
+     * @param others The keys that are not those of a species.
+     * @throws IllegalArgumentException If a key is neither.
+     */
+    static void checkKeys(Properties config, Collection<String> others)
+    {
+        checkKeys(config, registry, others);
+    }
+
+    /**
+     * Check the keys of a configuration; see checkKeys above.
+     * @param config The configuration.
+     * @param species Every species, indexed by code.
+     * @param others The keys that are not those of a species.
+     */
+    private static void checkKeys(Properties config, Species[] species, Collection<String> others)
+    {
+        for(String key : config.stringPropertyNames()) {
+            int dot = key.lastIndexOf('.');
+            int code = dot < 0 ? -1 : find(species, key.substring(0, dot));
+            String parameter = key.substring(dot + 1);
+            boolean known = others.contains(key)
+                || (code > NONE && (KEYS.contains(parameter)
+                                    || (species[code].animal && ANIMAL_KEYS.contains(parameter))));
+            if(!known) {
+                throw new IllegalArgumentException("Unknown key \"" + key + "\".");
+            }
+        }
+    }
+
+    /**
+     * @return A copy of this species, which can be changed on its own.
+     */
+    Species copy()
+    {
+        return new Species(this);
+    }
+
+    /**
+     * Change this species as a configuration says.
+     * @param config The configuration.
+     * @param prefix The start of the keys for this species.
+     */
+    void configure(Properties config, String prefix)
+    {
+        configure(config, prefix, registry);
+    }
+
+    /**
+     * Change this species as a configuration says.
+     * @param config The configuration.
+     * @param prefix The start of the keys for this species.
+     * @param species Every species, indexed by code, for the diet to name.
+     */
+    private void configure(Properties config, String prefix, Species[] species)
+    {
+        creationProbability = getDouble(config, prefix + "creationProbability", creationProbability);
+        String colorName = config.getProperty(prefix + "color");
+        if(colorName != null) {
+            color = Color.decode(colorName.trim());
+        }
+        if(!animal) {
+            return;
+        }
+        breedingAge = getInt(config, prefix + "breedingAge", breedingAge);
+        maxAge = getInt(config, prefix + "maxAge", maxAge);
+        breedingProbability = getDouble(config, prefix + "breedingProbability", breedingProbability);
+        maxLitterSize = getInt(config, prefix + "maxLitterSize", maxLitterSize);
+        searchRadius = getInt(config, prefix + "searchRadius", searchRadius);
+        huntsInFog = Boolean.parseBoolean(config.getProperty(prefix + "huntsInFog",
+                                                             String.valueOf(huntsInFog)).trim());
+        startingFood = getInt(config, prefix + "startingFood", startingFood);
+        newbornFood = getInt(config, prefix + "newbornFood", newbornFood);
+        randomNewbornFood = Boolean.parseBoolean(config.getProperty(prefix + "randomNewbornFood",
+                                                 String.valueOf(randomNewbornFood)).trim());
+        String diet = config.getProperty(prefix + "eats");
+        if(diet != null) {
+            foodValues = new int[0];
+            onlyWhenHungry = new boolean[0];
+            for(String entry : split(diet, ",")) {
+                String[] parts = split(entry, ":");
+                int food = parts.length < 2 ? -1 : find(species, parts[0]);
+                if(food <= NONE) {
+                    throw new IllegalArgumentException(prefix + "eats: cannot read \"" + entry + "\"");
+                }
+                int value = Integer.parseInt(parts[1]);
+                if(value < 0 || value > MAX_LEVEL) {
+                    throw new IllegalArgumentException(prefix + "eats: " + parts[0] + " must be"
+                                                       + " worth from 0 to " + MAX_LEVEL + ".");
+                }
+                setFood(food, value, parts.length > 2 && parts[2].equals("hungry"));
+            }
+        }
+        if(maxAge <= 0 || maxLitterSize <= 0 || (randomNewbornFood && newbornFood <= 0)) {
+            throw new IllegalArgumentException(name + " needs a positive maxAge, maxLitterSize"
+                                               + " and, if it is random, newbornFood.");
+        }
+        if(maxAge > MAX_LEVEL || startingFood < 0 || startingFood > MAX_LEVEL
+           || newbornFood < 0 || newbornFood > MAX_LEVEL) {
+            throw new IllegalArgumentException(name + " needs a maxAge, startingFood and"
+                                               + " newbornFood from 0 to " + MAX_LEVEL + ".");
+        }
+    }
+
+    /**
+     * Put a food in the diet of this species.
+     * @param food The code of the food species.
+     * @param value The food level after eating it.
+     * @param hungry true if it is only eaten below that level.
+     */
+    private void setFood(int food, int value, boolean hungry)
+    {
+        if(food >= foodValues.length) {
+            foodValues = Arrays.copyOf(foodValues, food + 1);
+            onlyWhenHungry = Arrays.copyOf(onlyWhenHungry, food + 1);
+        }
+        foodValues[food] = value;
+        onlyWhenHungry[food] = hungry;
+    }
+
+    /**
+     * @return The integer under a key, or the default if there is none.
+     */
+    private static int getInt(Properties config, String key, int defaultValue)
+    {
+        String value = config.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * @return The number under a key, or the default if there is none.
+     */
+    private static double getDouble(Properties config, String key, double defaultValue)
+    {
+        String value = config.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    /**
+     * @return The non-empty, trimmed parts of a string between separators.
+     */
+    private static String[] split(String text, String separator)
+    {
+        return Arrays.stream(text.split(separator))
+                     .map(String::trim)
+                     .filter(part -> !part.isEmpty())
+                     .toArray(String[]::new);
+    }
+
+    /**
+     * Find a species by name.
+     * @param name The name of the species.
+     * @return Its code, or -1 if there is no such species.
+     */
+    public static int find(String name)
+    {
+        return find(registry, name);
+    }
+
+    /**
+     * Find a species by name.
+     * @param species Every species, indexed by code, with any unused
+     *                places at the end left null.
+     * @param name The name of the species.
+     * @return Its code, or -1 if there is no such species.
+     */
+    private static int find(Species[] species, String name)
+    {
+        for(int code = 0; code < species.length && species[code] != null; code++) {
+            if(species[code].name.equals(name)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The number of species codes, including NONE.
+     */
+    public static int count()
+    {
+        return count;
+    }
+
+    /**
+     * @param code A species code.
+     * @return The species with that code.
+     */
+    public static Species get(int code)
+    {
+        return registry[code];
+    }
+
+    /**
+     * Find the species of something that occupies a cell of the field.
+     * @param occupant An animal, a plant, a species standing for a member
+     *                 of it, or null for an empty cell.
+     * @return The species code, or NONE for anything else.
+     */
+    public static int of(Object occupant)
+    {
+        if(occupant instanceof Animal) {
+            return ((Animal) occupant).getSpecies();
+        }
+        else if(occupant instanceof Plant) {
+            return ((Plant) occupant).getSpecies();
+        }
+        else if(occupant instanceof Species) {
+            return ((Species) occupant).code;
+        }
+        else {
+            return NONE;
+        }
+    }
+
+    /**
+     * @param species A species code.
+     * @return The name of the species.
+     */
+    public static String getName(int species)
+    {
+        return registry[species].name;
+    }
+
+    /**
+     * @return The species code.
+     */
+    public int getCode()
+    {
+        return code;
+    }
+
+    /**
+     * @return The name of the species.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return true for an animal species.
+     */
+    public boolean isAnimal()
+    {
+        return animal;
+    }
+
+    /**
+     * @return The age from which an animal can breed.
+     */
+    public int getBreedingAge()
+    {
+        return breedingAge;
+    }
+
+    /**
+     * @return The age an animal can live to.
+     */
+    public int getMaxAge()
+    {
+        return maxAge;
+    }
+
+    /**
+     * @return The likelihood of an animal breeding in a step.
+     */
+    public double getBreedingProbability()
+    {
+        return breedingProbability;
+    }
+
+    /**
+     * @return The most young an animal can have at once.
+     */
+    public int getMaxLitterSize()
+    {
+        return maxLitterSize;
+    }
+
+    /**
+     * @return How far a female looks for a male to breed with.
+     */
+    public int getSearchRadius()
+    {
+        return searchRadius;
+    }
+
+    /**
+     * @return true if an animal looks for food in fog, false if it only moves.
+     */
+    public boolean huntsInFog()
+    {
+        return huntsInFog;
+    }
+
+    /**
+     * @return The food level of an animal made with a random age.
+     */
+    public int getStartingFood()
+    {
+        return startingFood;
+    }
+
+    /**
+     * @return The food level of a newborn, or the bound of its random food level.
+     */
+    public int getNewbornFood()
+    {
+        return newbornFood;
+    }
+
+    /**
+     * @return true if a newborn has a random food level below getNewbornFood.
+     */
+    public boolean hasRandomNewbornFood()
+    {
+        return randomNewbornFood;
+    }
+
+    /**
+     * @return The likelihood of a cell getting a member of the species
+     *         when the field is populated.
+     */
+    public double getCreationProbability()
+    {
+        return creationProbability;
+    }
+
+    /**
+     * @return The colour the species is shown in, or null if it has none.
+     */
+    public Color getColor()
+    {
+        return color;
+    }
+
+    /**
+     * @param food The code of a food species.
+     * @return The food level an animal of this species has after eating
+     *         it, or zero if it does not eat it.
+     */
+    public int getFoodValue(int food)
+    {
+        return food < foodValues.length ? foodValues[food] : 0;
+    }
+
+    /**
+     * @param food The code of a food species.
+     * @return true if it is only eaten when the food level is below its value.
+     */
+    public boolean eatsOnlyWhenHungry(int food)
+    {
+        return food < onlyWhenHungry.length && onlyWhenHungry[food];
+    }
+
+    /**
+     * Make an animal of this species.
+     * @param randomAge true for a random age, false for a newborn.
+     * @param field The field to put it in.
+     * @param location A free location to put it at.
+     * @param sex The sex of the animal, either male or female.
+     * @return The new animal.
+     */
+    public Animal makeAnimal(boolean randomAge, Field field, Location location, String sex)
+    {
+        return animalFactory.make(randomAge, field, location, sex);
+    }
+
+    /**
+     * Make a plant of this species.
+     * @param field The field to put it in.
+     * @param location A free location to put it at.
+     * @return The new plant.
+     */
+    public Plant makePlant(Field field, Location location)
+    {
+        return plantFactory.make(field, location);
+    }
+
+    /**
+     * Makes the animals of a species.
+     */
+    public interface AnimalFactory
+    {
+        /**
+         * Make an animal.
+         * @param randomAge true for a random age, false for a newborn.
+         * @param field The field to put it in.
+         * @param location A free location to put it at.
+         * @param sex The sex of the animal, either male or female.
+         * @return The new animal.
+         */
+        Animal make(boolean randomAge, Field field, Location location, String sex);
+    }
+
+    /**
+     * Makes the plants of a species.
+     */
+    public interface PlantFactory
+    {
+        /**
+         * Make a plant.
+         * @param field The field to put it in.
+         * @param location A free location to put it at.
+         * @return The new plant.
+         */
+        Plant make(Field field, Location location);
+    }
+}
@@ -0,0 +1,504 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Measures the steps of a simulation: how long each phase of a step
+ * takes, how many of each species are born, die and are eaten, and how
+ * much the stepping thread allocates. It is published as an MBean named
+ * "simulation:type=StepMetrics,id=n" and can print a summary line every
+ * so many steps. See Simulator.setMetrics. It is only published once
+ * register is called, and stays published, keeping the simulation it
+ * measures from being collected, until unregister is called.
+ *
+ * Phase times go into histograms with four buckets per power of two,
+ * so percentiles are within about a tenth of the true value. Births,
+ * deaths and kills are counted where they happen, on whichever thread
+ * runs the tile, in striped counters; only those inside a step are
+ * counted, so populating the field is not. Allocation is only measured
+ * on the thread that runs simulateOneStep, so the tiled engine's own
+ * threads are not included.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class StepMetrics implements StepMetricsMBean
+{
+    // The phases of a step.
+    public static final int WEATHER = 0;
+    public static final int ANIMALS = 1;
+    public static final int PLANTS = 2;
+    public static final int SPAWN = 3;
+    public static final int OBSERVERS = 4;
+    private static final String[] PHASE_NAMES = { "weather", "animals", "plants", "spawn", "observers" };
+    // The number of histogram buckets: four for each power of two of nanoseconds.
+    private static final int BUCKETS = 248;
+    // Numbers the MBeans of simulations that are measured at the same time.
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    // The field whose populations are shown.
+    private Field field;
+    // The name the MBean is registered under, or null if it is not.
+    private ObjectName name;
+    // The number of steps measured.
+    private long steps;
+    // How often each phase took the time of each bucket, how often it
+    // ran at all (spawning does not in dry weather), and its total and
+    // longest times, in nanoseconds.
+    private long[][] histograms;
+    private long[] phaseCounts;
+    private long[] phaseTotals;
+    private long[] phaseMax;
+    // Births, deaths and kills of each species, counted as they happen.
+    private LongAdder[] born, died, killed;
+    // The counts above when the current step started.
+    private long[] bornBefore, diedBefore, killedBefore;
+    // The counts of the last step and of all steps measured.
+    private long[] lastBirths, lastDeaths, lastKills;
+    private long[] births, deaths, kills;
+    // Tells the bytes a thread has allocated, or null if it cannot.
+    private com.sun.management.ThreadMXBean threads;
+    // The bytes allocated when the step started, in the last step and in all.
+    private long allocatedBefore, lastAllocated, allocated;
+    // How many steps apart a summary is printed, or 0 for never.
+    private volatile int logInterval;
+
+    /**
+     * Create the measurements of the simulation on a field.
+     * @param field The field of the simulation.
+     */
+    public StepMetrics(Field field)
+    {
+        this.field = field;
+        int count = Species.count();
+        born = new LongAdder[count];
+        died = new LongAdder[count];
+        killed = new LongAdder[count];
+        for(int species = 0; species < count; species++) {
+            born[species] = new LongAdder();
+            died[species] = new LongAdder();
+            killed[species] = new LongAdder();
+        }
+        bornBefore = new long[count];
+        diedBefore = new long[count];
+        killedBefore = new long[count];
+        if(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if(!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+                threads = null;
+            }
+        }
+        reset();
+    }
+
+    /**
+     * @param phase A phase of a step, e.g. ANIMALS.
+     * @return Its name.
+     */
+    public static String getPhaseName(int phase)
+    {
+        return PHASE_NAMES[phase];
+    }
+
+    /**
+     * Publish the measurements through the platform MBean server.
+     * @throws IllegalStateException If they cannot be registered.
+     */
+    public void register()
+    {
+        if(name != null) {
+            return;
+        }
+        try {
+            ObjectName newName = new ObjectName("simulation:type=StepMetrics,id="
+                                                + instances.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+            name = newName;
+        }
+        catch(JMException e) {
+            throw new IllegalStateException("Cannot publish the step metrics.", e);
+        }
+    }
+
+    /**
+     * Stop publishing the measurements.
+     */
+    public void unregister()
+    {
+        if(name == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if(server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+        catch(JMException e) {
+            // It is gone either way.
+        }
+        name = null;
+    }
+
+    /**
+     * @return The name the measurements are published under, or null.
+     */
+    public ObjectName getName()
+    {
+        return name;
+    }
+
+    /**
+     * A step starts.
+     * @return The time now, for the first phase.
+     */
+    synchronized long startStep()
+    {
+        snapshot(born, bornBefore);
+        snapshot(died, diedBefore);
+        snapshot(killed, killedBefore);
+        allocatedBefore = threads != null ? threads.getCurrentThreadAllocatedBytes() : 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * A phase of the step ends.
+     * @param phase The phase, e.g. ANIMALS.
+     * @param start The time the phase started.
+     * @return The time now, for the next phase.
+     */
+    synchronized long endPhase(int phase, long start)
+    {
+        long now = System.nanoTime();
+        long nanos = now - start;
+        histograms[phase][bucketOf(nanos)]++;
+        phaseCounts[phase]++;
+        phaseTotals[phase] += nanos;
+        phaseMax[phase] = Math.max(phaseMax[phase], nanos);
+        return now;
+    }
+
+    /**
+     * The step ends.
+     * @param step The number of the step.
+     */
+    void endStep(int step)
+    {
+        synchronized(this) {
+            steps++;
+            difference(born, bornBefore, lastBirths, births);
+            difference(died, diedBefore, lastDeaths, deaths);
+            difference(killed, killedBefore, lastKills, kills);
+            if(threads != null) {
+                lastAllocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                allocated += lastAllocated;
+            }
+        }
+        if(logInterval > 0 && step % logInterval == 0) {
+            System.out.println(summary(step));
+        }
+    }
+
+    /**
+     * A member of a species is put in the field.
+     * @param species Its species code.
+     */
+    void born(int species)
+    {
+        born[species].increment();
+    }
+
+    /**
+     * A member of a species is taken out of the field.
+     * @param species Its species code.
+     */
+    void died(int species)
+    {
+        died[species].increment();
+    }
+
+    /**
+     * A member of a species is eaten.
+     * @param species Its species code.
+     */
+    void killed(int species)
+    {
+        killed[species].increment();
+    }
+
+    /**
+     * Take the current values of counters.
+     */
+    private static void snapshot(LongAdder[] counters, long[] values)
+    {
+        for(int species = 0; species < counters.length; species++) {
+            values[species] = counters[species].sum();
+        }
+    }
+
+    /**
+     * Work out how much counters went up in a step, and add that to the totals.
+     */
+    private static void difference(LongAdder[] counters, long[] before, long[] last, long[] totals)
+    {
+        for(int species = 0; species < counters.length; species++) {
+            last[species] = counters[species].sum() - before[species];
+            totals[species] += last[species];
+        }
+    }
+
+    /**
+     * @return The histogram bucket of a time: four buckets for every
+     *         power of two of nanoseconds.
+     */
+    private static int bucketOf(long nanos)
+    {
+        if(nanos < 4) {
+            return (int) Math.max(nanos, 0);
+        }
+        int top = 63 - Long.numberOfLeadingZeros(nanos);
+        return (top - 1) * 4 + (int) ((nanos >>> (top - 2)) & 3);
+    }
+
+    /**
+     * @return The middle of the times that fall in a bucket, in nanoseconds.
+     */
+    private static double middleOf(int bucket)
+    {
+        if(bucket < 4) {
+            return bucket;
+        }
+        int top = bucket / 4 + 1;
+        long low = (long) (4 + bucket % 4) << (top - 2);
+        return low + (1L << (top - 2)) / 2.0;
+    }
+
+    /**
+     * @return The time each phase stays under in the given share of steps.
+     */
+    private synchronized double[] percentile(double share)
+    {
+        double[] millis = new double[PHASE_NAMES.length];
+        for(int phase = 0; phase < millis.length; phase++) {
+            long wanted = (long) Math.ceil(share * phaseCounts[phase]);
+            long seen = 0;
+            for(int bucket = 0; bucket < BUCKETS && phaseCounts[phase] > 0; bucket++) {
+                seen += histograms[phase][bucket];
+                if(seen >= wanted) {
+                    millis[phase] = Math.min(middleOf(bucket), phaseMax[phase]) / 1e6;
+                    break;
+                }
+            }
+        }
+        return millis;
+    }
+
+    /**
+     * @return A line that sums up the last step.
+     */
+    private synchronized String summary(int step)
+    {
+        StringBuilder line = new StringBuilder("step " + step + ":");
+        double[] mean = getPhaseMeanMillis();
+        for(int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            line.append(String.format(" %s %.3f", PHASE_NAMES[phase], mean[phase]));
+        }
+        line.append(" ms (mean);");
+        for(int species = Species.NONE + 1; species < born.length; species++) {
+            line.append(" ").append(Species.getName(species)).append(" ")
+                .append(field.getCount(species)).append(" +").append(lastBirths[species])
+                .append(" -").append(lastDeaths[species]);
+        }
+        if(threads != null) {
+            line.append("; ").append(lastAllocated / 1024).append(" KB allocated");
+        }
+        return line.toString();
+    }
+
+    /**
+     * @return The number of steps measured.
+     */
+    public long getSteps()
+    {
+        return steps;
+    }
+
+    /**
+     * @return The names of the phases of a step.
+     */
+    public String[] getPhaseNames()
+    {
+        return PHASE_NAMES.clone();
+    }
+
+    /**
+     * @return The mean time of each phase when it runs, in milliseconds.
+     */
+    public synchronized double[] getPhaseMeanMillis()
+    {
+        double[] millis = new double[PHASE_NAMES.length];
+        for(int phase = 0; phase < millis.length; phase++) {
+            millis[phase] = phaseCounts[phase] == 0 ? 0 : phaseTotals[phase] / 1e6 / phaseCounts[phase];
+        }
+        return millis;
+    }
+
+    /**
+     * @return The median time of each phase, in milliseconds.
+     */
+    public double[] getPhaseMedianMillis()
+    {
+        return percentile(0.5);
+    }
+
+    /**
+     * @return The time each phase stays under in 99 steps out of 100.
+     */
+    public double[] getPhase99thPercentileMillis()
+    {
+        return percentile(0.99);
+    }
+
+    /**
+     * @return The longest time of each phase, in milliseconds.
+     */
+    public synchronized double[] getPhaseMaxMillis()
+    {
+        double[] millis = new double[PHASE_NAMES.length];
+        for(int phase = 0; phase < millis.length; phase++) {
+            millis[phase] = phaseMax[phase] / 1e6;
+        }
+        return millis;
+    }
+
+    /**
+     * @return The names of the species, indexed by code.
+     */
+    public String[] getSpeciesNames()
+    {
+        String[] names = new String[born.length];
+        for(int species = 0; species < names.length; species++) {
+            names[species] = Species.getName(species);
+        }
+        return names;
+    }
+
+    /**
+     * @return The number of each species in the field.
+     */
+    public int[] getPopulation()
+    {
+        int[] population = new int[born.length];
+        for(int species = 0; species < population.length; species++) {
+            population[species] = field.getCount(species);
+        }
+        return population;
+    }
+
+    /**
+     * @return The births of each species in the last step.
+     */
+    public synchronized long[] getBirthsLastStep()
+    {
+        return lastBirths.clone();
+    }
+
+    /**
+     * @return The deaths of each species in the last step.
+     */
+    public synchronized long[] getDeathsLastStep()
+    {
+        return lastDeaths.clone();
+    }
+
+    /**
+     * @return The members of each species eaten in the last step.
+     */
+    public synchronized long[] getKillsLastStep()
+    {
+        return lastKills.clone();
+    }
+
+    /**
+     * @return The births of each species in all steps measured.
+     */
+    public synchronized long[] getBirths()
+    {
+        return births.clone();
+    }
+
+    /**
+     * @return The deaths of each species in all steps measured.
+     */
+    public synchronized long[] getDeaths()
+    {
+        return deaths.clone();
+    }
+
+    /**
+     * @return The members of each species eaten in all steps measured.
+     */
+    public synchronized long[] getKills()
+    {
+        return kills.clone();
+    }
+
+    /**
+     * @return The bytes the stepping thread allocated in the last step, or -1.
+     */
+    public synchronized long getAllocatedBytesLastStep()
+    {
+        return threads != null ? lastAllocated : -1;
+    }
+
+    /**
+     * @return The mean bytes allocated per step, or -1.
+     */
+    public synchronized long getMeanAllocatedBytesPerStep()
+    {
+        if(threads == null) {
+            return -1;
+        }
+        return steps == 0 ? 0 : allocated / steps;
+    }
+
+    /**
+     * @return How many steps apart a summary is printed, or 0 for never.
+     */
+    public int getLogInterval()
+    {
+        return logInterval;
+    }
+
+    /**
+     * @param steps How many steps apart to print a summary, or 0 for never.
+     */
+    public void setLogInterval(int steps)
+    {
+        logInterval = Math.max(steps, 0);
+    }
+
+    /**
+     * Forget everything measured so far.
+     */
+    public synchronized void reset()
+    {
+        int count = born.length;
+        steps = 0;
+        histograms = new long[PHASE_NAMES.length][BUCKETS];
+        phaseCounts = new long[PHASE_NAMES.length];
+        phaseTotals = new long[PHASE_NAMES.length];
+        phaseMax = new long[PHASE_NAMES.length];
+        lastBirths = new long[count];
+        lastDeaths = new long[count];
+        lastKills = new long[count];
+        births = new long[count];
+        deaths = new long[count];
+        kills = new long[count];
+        lastAllocated = 0;
+        allocated = 0;
+    }
+}
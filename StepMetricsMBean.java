@@ -0,0 +1,107 @@
+/**
+ * What StepMetrics shows through JMX, e.g. in JConsole. Times are in
+ * milliseconds and arrays of times are indexed like getPhaseNames;
+ * arrays of counts are indexed by species code, like getSpeciesNames.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public interface StepMetricsMBean
+{
+    /**
+     * @return The number of steps measured.
+     */
+    long getSteps();
+
+    /**
+     * @return The names of the phases of a step.
+     */
+    String[] getPhaseNames();
+
+    /**
+     * @return The mean time of each phase when it runs.
+     */
+    double[] getPhaseMeanMillis();
+
+    /**
+     * @return The median time of each phase.
+     */
+    double[] getPhaseMedianMillis();
+
+    /**
+     * @return The time each phase stays under in 99 steps out of 100.
+     */
+    double[] getPhase99thPercentileMillis();
+
+    /**
+     * @return The longest time of each phase.
+     */
+    double[] getPhaseMaxMillis();
+
+    /**
+     * @return The names of the species, indexed by code.
+     */
+    String[] getSpeciesNames();
+
+    /**
+     * @return The number of each species in the field after the last step.
+     */
+    int[] getPopulation();
+
+    /**
+     * @return The births of each species in the last step.
+     */
+    long[] getBirthsLastStep();
+
+    /**
+     * @return The deaths of each species, of any cause, in the last step.
+     */
+    long[] getDeathsLastStep();
+
+    /**
+     * @return The members of each species eaten in the last step.
+     */
+    long[] getKillsLastStep();
+
+    /**
+     * @return The births of each species in all steps measured.
+     */
+    long[] getBirths();
+
+    /**
+     * @return The deaths of each species in all steps measured.
+     */
+    long[] getDeaths();
+
+    /**
+     * @return The members of each species eaten in all steps measured.
+     */
+    long[] getKills();
+
+    /**
+     * @return The bytes allocated by the thread running the last step,
+     *         or -1 if the JVM cannot tell.
+     */
+    long getAllocatedBytesLastStep();
+
+    /**
+     * @return The mean bytes allocated per step by the thread running
+     *         the steps, or -1 if the JVM cannot tell.
+     */
+    long getMeanAllocatedBytesPerStep();
+
+    /**
+     * @return How many steps apart a summary is printed, or 0 for never.
+     */
+    int getLogInterval();
+
+    /**
+     * @param steps How many steps apart to print a summary, or 0 for never.
+     */
+    void setLogInterval(int steps);
+
+    /**
+     * Forget everything measured so far.
+     */
+    void reset();
+}
@@ -0,0 +1,375 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a simulation for every point of a set of parameter values, e.g.
+ * a grid or a Latin hypercube of breeding, creation and weather
+ * probabilities, on a work-stealing pool with a thread per core.
+ * A parameter is named by a key of Simulator.configure, such as
+ * "Lion.breedingProbability" or "fogProbability".
+ *
+ * Every point is run by a number of replicas. Replica r of every point
+ * uses the seed firstSeed + r, so points are compared on the same random
+ * numbers as far as their runs go alike. A run stops as soon as it is no
+ * longer viable. Each finished run is written straight away as a line of
+ * a comma separated results table: the point, the replica, the seed, the
+ * parameter values, the number of steps run, and then for every species
+ * its final count and the step it died out at (-1 if it did not). A sweep
+ * that is stopped can be run again with the same results file and only
+ * runs what is not in it yet.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class Sweep
+{
+    // The depth and width of the field of every run.
+    private int depth;
+    private int width;
+    // The most steps a run goes on for.
+    private int steps;
+    // The number of runs of every point, and the seed of the first.
+    private int replicas;
+    private long firstSeed;
+    // The number of threads runs are done on.
+    private int threads;
+    // Set to stop a sweep early.
+    private volatile boolean cancelled;
+    // The number of runs of the current sweep that have finished.
+    private AtomicInteger finished;
+
+    /**
+     * Create a sweep of simulations of the given size.
+     * @param depth The depth of the field of every run.
+     * @param width The width of the field of every run.
+     * @param steps The most steps a run goes on for.
+     */
+    public Sweep(int depth, int width, int steps)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        replicas = 1;
+        firstSeed = 1;
+        threads = Runtime.getRuntime().availableProcessors();
+        finished = new AtomicInteger();
+    }
+
+    /**
+     * Sweep a Latin hypercube of breeding probabilities and weather and
+     * write the results table.
+     * @param args The results file, and optionally the number of points,
+     *             the number of steps and the side of the square field.
+     * @throws IOException If the results file cannot be written.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : "sweep.csv";
+        int points = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        String[] keys = { "Lion.breedingProbability", "Hyena.breedingProbability",
+                          "Zebra.breedingProbability", "rainProbability", "fogProbability" };
+        double[] min = { 0.05, 0.05, 0.05, 0.0, 0.0 };
+        double[] max = { 0.3, 0.3, 0.3, 0.3, 0.5 };
+        Sweep sweep = new Sweep(size, size, steps);
+        long start = System.nanoTime();
+        int runs = sweep.run(keys, latinHypercube(points, 1, min, max), fileName);
+        System.out.printf("%d runs in %.1f s%n", runs, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Make every combination of the given values of each parameter.
+     * @param values The values of each parameter.
+     * @return The points, each with a value for every parameter.
+     */
+    public static List<double[]> grid(double[]... values)
+    {
+        List<double[]> points = new ArrayList<>();
+        points.add(new double[values.length]);
+        for(int parameter = 0; parameter < values.length; parameter++) {
+            List<double[]> next = new ArrayList<>(points.size() * values[parameter].length);
+            for(double[] point : points) {
+                for(double value : values[parameter]) {
+                    double[] copy = point.clone();
+                    copy[parameter] = value;
+                    next.add(copy);
+                }
+            }
+            points = next;
+        }
+        return points;
+    }
+
+    /**
+     * Make a Latin hypercube of points: the range of every parameter is
+     * cut into as many equal strata as there are points, and every stratum
+     * of every parameter gets exactly one point, at a random place in it.
+     * This covers every parameter evenly with far fewer points than a grid.
+     * @param points The number of points.
+     * @param seed The seed for placing the points.
+     * @param min The lowest value of each parameter.
+     * @param max The highest value of each parameter.
+     * @return The points, each with a value for every parameter.
+     */
+    public static List<double[]> latinHypercube(int points, long seed, double[] min, double[] max)
+    {
+        SplittableRandom rand = new SplittableRandom(seed);
+        double[][] result = new double[points][min.length];
+        int[] strata = new int[points];
+        for(int parameter = 0; parameter < min.length; parameter++) {
+            for(int point = 0; point < points; point++) {
+                strata[point] = point;
+            }
+            // Shuffle which point gets which stratum.
+            for(int point = points - 1; point > 0; point--) {
+                int other = rand.nextInt(point + 1);
+                int stratum = strata[point];
+                strata[point] = strata[other];
+                strata[other] = stratum;
+            }
+            double width = (max[parameter] - min[parameter]) / points;
+            for(int point = 0; point < points; point++) {
+                result[point][parameter] = min[parameter]
+                    + (strata[point] + rand.nextDouble()) * width;
+            }
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Set the number of runs of every point.
+     * @param replicas The number of runs; 1 by default.
+     */
+    public void setReplicas(int replicas)
+    {
+        this.replicas = Math.max(replicas, 1);
+    }
+
+    /**
+     * Set the seed of the first replica of every point.
+     * @param firstSeed The seed; replica r uses firstSeed + r.
+     */
+    public void setFirstSeed(long firstSeed)
+    {
+        this.firstSeed = firstSeed;
+    }
+
+    /**
+     * Set the number of threads runs are done on.
+     * @param threads The number of threads; one per core by default.
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = Math.max(threads, 1);
+    }
+
+    /**
+     * Stop the current sweep as soon as possible. Runs not yet finished
+     * are left out of the results table, and are done when the sweep is
+     * run again.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * @return The number of runs of the current sweep that have finished.
+     */
+    public int getFinished()
+    {
+        return finished.get();
+    }
+
+    /**
+     * Run every point and write the results table, adding to it if it
+     * exists already. Runs already in the table are not done again, so
+     * the sweep must be given the same points each time.
+     * @param keys The key of each parameter (see Simulator.configure).
+     * @param points The value of every parameter at each point.
+     * @param fileName The file to write the results table to.
+     * @return The number of runs done.
+     * @throws IOException If the results table cannot be read or written.
+     * @throws IllegalArgumentException If a key is not one of configure.
+     */
+    public int run(String[] keys, List<double[]> points, String fileName) throws IOException
+    {
+        // Find a misspelt key before anything is run.
+        Properties config = new Properties();
+        for(String key : keys) {
+            config.setProperty(key, "");
+        }
+        Simulator.checkKeys(config);
+        cancelled = false;
+        finished.set(0);
+        Path path = Paths.get(fileName);
+        Set<Long> done = readDone(path);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        try(BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                                                         StandardOpenOption.CREATE,
+                                                         StandardOpenOption.APPEND)) {
+            if(Files.size(path) == 0) {
+                writeHeader(out, keys);
+            }
+            for(int point = 0; point < points.size(); point++) {
+                for(int replica = 0; replica < replicas; replica++) {
+                    if(!done.contains(runKey(point, replica))) {
+                        int thePoint = point;
+                        int theReplica = replica;
+                        tasks.add(() -> {
+                            runPoint(keys, points.get(thePoint), thePoint, theReplica, out);
+                            return null;
+                        });
+                    }
+                }
+            }
+            try {
+                Replica.runAll(tasks, threads);
+            }
+            catch(ExecutionException e) {
+                if(e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return finished.get();
+    }
+
+    /**
+     * Run one replica of a point and write its line of the results table,
+     * unless the sweep is cancelled.
+     * @param keys The key of each parameter.
+     * @param values The value of each parameter.
+     * @param point The number of the point.
+     * @param replica The number of the replica.
+     * @param out The results table.
+     */
+    private void runPoint(String[] keys, double[] values, int point, int replica,
+                          BufferedWriter out)
+    {
+        if(cancelled) {
+            return;
+        }
+        long seed = firstSeed + replica;
+        Simulator simulator = new Simulator(depth, width, seed);
+        Properties config = new Properties();
+        for(int parameter = 0; parameter < keys.length; parameter++) {
+            config.setProperty(keys[parameter], String.valueOf(values[parameter]));
+        }
+        simulator.configure(config);
+        Replica run = Replica.run(simulator, steps, () -> cancelled, null);
+        if(run == null) {
+            return;
+        }
+        StringBuilder line = new StringBuilder();
+        line.append(point).append(',').append(replica).append(',').append(seed);
+        for(double value : values) {
+            line.append(',').append(value);
+        }
+        line.append(',').append(run.getLastStep());
+        for(int species = Species.NONE + 1; species < Species.count(); species++) {
+            line.append(',').append(run.getCount(species)).append(',').append(run.getExtinctionStep(species));
+        }
+        line.append('\n');
+        synchronized(out) {
+            try {
+                out.write(line.toString());
+                // Keep what is finished even if the sweep is killed.
+                out.flush();
+            }
+            catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        finished.incrementAndGet();
+    }
+
+    /**
+     * Write the column names of the results table.
+     * @param out The results table.
+     * @param keys The key of each parameter.
+     * @throws IOException If the table cannot be written.
+     */
+    private void writeHeader(BufferedWriter out, String[] keys) throws IOException
+    {
+        out.write("point,replica,seed");
+        for(String key : keys) {
+            out.write("," + key);
+        }
+        out.write(",steps");
+        for(int species = Species.NONE + 1; species < Species.count(); species++) {
+            String name = Species.getName(species);
+            out.write("," + name + "," + name + ".extinct");
+        }
+        out.write("\n");
+        out.flush();
+    }
+
+    /**
+     * Find the runs already in a results table, and cut off a last line
+     * that was only partly written when an earlier sweep was killed.
+     * @param path The results table, which need not exist.
+     * @return The key (see runKey) of every run in the table.
+     * @throws IOException If the table cannot be read.
+     */
+    private Set<Long> readDone(Path path) throws IOException
+    {
+        Set<Long> done = new HashSet<>();
+        if(!Files.exists(path)) {
+            return done;
+        }
+        long size = Files.size(path);
+        long complete = 0;
+        try(BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            boolean header = true;
+            while((line = in.readLine()) != null) {
+                // Only lines ending in a newline are whole.
+                if(complete + line.length() + 1 > size) {
+                    break;
+                }
+                complete += line.length() + 1;
+                if(header) {
+                    header = false;
+                    continue;
+                }
+                String[] columns = line.split(",", 3);
+                done.add(runKey(Integer.parseInt(columns[0]), Integer.parseInt(columns[1])));
+            }
+        }
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(complete);
+        }
+        return done;
+    }
+
+    /**
+     * @param point The number of a point.
+     * @param replica The number of a replica.
+     * @return A number that stands for that run alone.
+     */
+    private static long runKey(int point, int replica)
+    {
+        return ((long) point << 32) | replica;
+    }
+}
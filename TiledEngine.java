@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the animal and plant phases of a simulation step on several threads.
+ *
+ * The field is cut into tiles (see Field.TILE_SHIFT) that are coloured in a
+ * repeating 3x3 pattern, so tiles of the same colour are two whole tiles
+ * apart. Nothing an animal or plant does reaches further than one tile from
+ * where it stands, so all tiles of one colour can be worked on at once without
+ * two threads ever touching the same cell, counter or mate index bucket.
+ * The nine colours are worked through one after the other.
+ *
+ * That order is also the rule for moves, kills and births across tile
+ * borders: they happen if the cell is still there for the taking when the
+ * tile's turn comes, and tiles of later colours see the result. Every tile
+ * draws its random numbers from a stream of its own, seeded from the step
+ * and the tile, so a run gives the same result whatever the number of
+ * threads.
+ *
+ * @author Andrey and Shehan
+ * @version (2, 18.10.2026)
+ */
+public class TiledEngine
+{
+    // The number of tile colours: three across times three down.
+    private static final int COLOURS = 9;
+    // Phases of a step that use random numbers in tiles.
+    private static final int ANIMAL_PHASE = 0;
+    private static final int PLANT_PHASE = 1;
+
+    // The threads the tiles are worked on by.
+    private ForkJoinPool pool;
+    // The animals in each tile at the start of the animal phase.
+    private List<List<Animal>> tileAnimals;
+    // The animals born in each tile during the animal phase.
+    private List<List<Animal>> tileNewAnimals;
+    // The plants in each tile at the start of the plant phase.
+    private List<List<Plant>> tilePlants;
+    // The plants grown in each tile during the plant phase.
+    private List<List<Plant>> tileNewPlants;
+
+    /**
+     * Create an engine working with the given number of threads.
+     * @param threads The number of threads. Must be at least one.
+     */
+    public TiledEngine(int threads)
+    {
+        pool = new ForkJoinPool(threads);
+        tileAnimals = new ArrayList<>();
+        tileNewAnimals = new ArrayList<>();
+        tilePlants = new ArrayList<>();
+        tileNewPlants = new ArrayList<>();
+    }
+
+    /**
+     * @return The number of threads the engine works with.
+     */
+    public int getThreads()
+    {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stop the engine's threads. The engine cannot be used afterwards.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Let every live animal act for one step, in the way the condition calls for.
+     * @param animals The animals in the field.
+     * @param field The field they live in.
+     * @param condition The weather and time of day for this step.
+     * @param step The number of the step, used to seed the tiles' random numbers.
+     * @param streams The randomizer the tiles' random numbers come from.
+     * @return The animals still alive afterwards, followed by the newborns,
+     *         in the list that was given.
+     */
+    public List<Animal> actAnimals(List<Animal> animals, Field field, Condition condition, int step,
+                                   Randomizer streams)
+    {
+        int tiles = field.getTileRows() * field.getTileCols();
+        resize(tileAnimals, tiles);
+        resize(tileNewAnimals, tiles);
+        for(Animal animal : animals) {
+            if(animal.isAlive()) {
+                tileAnimals.get(field.tileOf(animal.getRow(), animal.getCol())).add(animal);
+            }
+        }
+
+        boolean night = !condition.day();
+        boolean fog = condition.fogWeather();
+        forEachTile(field, streams, step, ANIMAL_PHASE, tile -> {
+            List<Animal> newAnimals = tileNewAnimals.get(tile);
+            for(Animal animal : tileAnimals.get(tile)) {
+                // It may have been eaten earlier in this step.
+                if(animal.isAlive()) {
+                    if(night) {
+                        animal.sleep();
+                    }
+                    else if(fog) {
+                        animal.actAtFog(newAnimals);
+                    }
+                    else {
+                        animal.act(newAnimals);
+                    }
+                }
+            }
+        });
+
+        // Every animal is in a tile's list now, so the list can be refilled.
+        animals.clear();
+        for(int tile = 0; tile < tiles; tile++) {
+            for(Animal animal : tileAnimals.get(tile)) {
+                if(animal.isAlive()) {
+                    animals.add(animal);
+                }
+            }
+            for(Animal animal : tileNewAnimals.get(tile)) {
+                animals.add(animal);
+            }
+        }
+        return animals;
+    }
+
+    /**
+     * Let every live plant try to reproduce.
+     * @param plants The plants in the field.
+     * @param field The field they grow in.
+     * @param step The number of the step, used to seed the tiles' random numbers.
+     * @param streams The randomizer the tiles' random numbers come from.
+     * @return The plants still alive afterwards, followed by the new ones,
+     *         in the list that was given.
+     */
+    public List<Plant> reproducePlants(List<Plant> plants, Field field, int step, Randomizer streams)
+    {
+        int tiles = field.getTileRows() * field.getTileCols();
+        resize(tilePlants, tiles);
+        resize(tileNewPlants, tiles);
+        for(Plant plant : plants) {
+            if(plant.isAlive()) {
+                tilePlants.get(field.tileOf(plant.getRow(), plant.getCol())).add(plant);
+            }
+        }
+
+        forEachTile(field, streams, step, PLANT_PHASE, tile -> {
+            List<Plant> newPlants = tileNewPlants.get(tile);
+            for(Plant plant : tilePlants.get(tile)) {
+                plant.reproduce(newPlants);
+            }
+        });
+
+        plants.clear();
+        for(int tile = 0; tile < tiles; tile++) {
+            for(Plant plant : tilePlants.get(tile)) {
+                if(plant.isAlive()) {
+                    plants.add(plant);
+                }
+            }
+            for(Plant plant : tileNewPlants.get(tile)) {
+                plants.add(plant);
+            }
+        }
+        return plants;
+    }
+
+    /**
+     * Do some work for every tile of the field, a colour at a time, with
+     * all tiles of a colour worked on in parallel.
+     * @param field The field whose tiles are worked on.
+     * @param streams The randomizer the tiles' random numbers come from.
+     * @param step The number of the step.
+     * @param phase The phase of the step.
+     * @param work The work to do for each tile.
+     */
+    private void forEachTile(Field field, Randomizer streams, int step, int phase, TileWork work)
+    {
+        int tileRows = field.getTileRows();
+        int tileCols = field.getTileCols();
+        int[] tiles = new int[tileRows * tileCols];
+        field.setConcurrent(true);
+        try {
+            for(int colour = 0; colour < COLOURS; colour++) {
+                int count = 0;
+                for(int tileRow = colour / 3; tileRow < tileRows; tileRow += 3) {
+                    for(int tileCol = colour % 3; tileCol < tileCols; tileCol += 3) {
+                        tiles[count++] = tileRow * tileCols + tileCol;
+                    }
+                }
+                if(count > 0) {
+                    pool.invoke(new TileBatch(tiles, 0, count, streams, step, phase, work));
+                }
+            }
+        }
+        finally {
+            field.setConcurrent(false);
+        }
+    }
+
+    /**
+     * Make a list of per-tile lists hold exactly the given number of
+     * empty lists, reusing the ones it already has.
+     */
+    private static <T> void resize(List<List<T>> perTile, int tiles)
+    {
+        while(perTile.size() > tiles) {
+            perTile.remove(perTile.size() - 1);
+        }
+        for(List<T> list : perTile) {
+            list.clear();
+        }
+        while(perTile.size() < tiles) {
+            perTile.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Work to be done for a single tile.
+     */
+    private interface TileWork
+    {
+        /**
+         * Do the work for one tile.
+         * @param tile The tile to work on.
+         */
+        void run(int tile);
+    }
+
+    /**
+     * A batch of tiles of the same colour, split in halves until each
+     * half is a single tile, so the pool can share them out.
+     */
+    private static class TileBatch extends RecursiveAction
+    {
+        // Batches are never serialized, but RecursiveAction is Serializable.
+        private static final long serialVersionUID = 1L;
+
+        private int[] tiles;
+        private int from, to;
+        private Randomizer streams;
+        private int step, phase;
+        private TileWork work;
+
+        /**
+         * Make a batch of the tiles in a range of an array.
+         * @param tiles The tiles of the colour.
+         * @param from The first index in the batch.
+         * @param to The index after the last one in the batch.
+         * @param streams The randomizer the tiles' random numbers come from.
+         * @param step The number of the step.
+         * @param phase The phase of the step.
+         * @param work The work to do for each tile.
+         */
+        TileBatch(int[] tiles, int from, int to, Randomizer streams, int step, int phase, TileWork work)
+        {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+            this.streams = streams;
+            this.step = step;
+            this.phase = phase;
+            this.work = work;
+        }
+
+        /**
+         * Work on a single tile with its own random numbers,
+         * or split the batch in two.
+         */
+        protected void compute()
+        {
+            if(to - from == 1) {
+                int tile = tiles[from];
+                Randomizer.bind(streams.forTile(step, phase, tile));
+                try {
+                    work.run(tile);
+                }
+                finally {
+                    Randomizer.unbind();
+                }
+            }
+            else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileBatch(tiles, from, middle, streams, step, phase, work),
+                          new TileBatch(tiles, middle, to, streams, step, phase, work));
+            }
+        }
+    }
+}